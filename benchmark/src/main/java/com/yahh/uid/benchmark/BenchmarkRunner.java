@@ -0,0 +1,35 @@
+package com.yahh.uid.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * @author 邹磊
+ * @version 1.0
+ * @description: 运行全部基准测试，并通过GC profiler输出分配速率
+ * @date 2021/4/24 16:05
+ *
+ * java -jar target/benchmarks.jar [JMH参数]，例如只跑cached模式: java -jar target/benchmarks.jar cached
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+
+        OptionsBuilder builder = new OptionsBuilder();
+        if (commandLineOptions.getIncludes().isEmpty()) {
+            builder.include("com.yahh.uid.benchmark.*");
+        }
+        Options options = builder
+                .parent(commandLineOptions)
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        new Runner(options).run();
+    }
+}
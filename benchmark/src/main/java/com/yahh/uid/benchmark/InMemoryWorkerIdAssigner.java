@@ -0,0 +1,21 @@
+package com.yahh.uid.benchmark;
+
+import com.yahh.uid.worker.WorkerIdAssigner;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author 邹磊
+ * @version 1.0
+ * @description: 不依赖数据库的workerId分配，仅用于基准测试
+ * @date 2021/4/24 14:10
+ */
+public class InMemoryWorkerIdAssigner implements WorkerIdAssigner {
+
+    private static final AtomicLong WORKER_ID = new AtomicLong();
+
+    @Override
+    public long assignWorkerId() {
+        return WORKER_ID.incrementAndGet();
+    }
+}
@@ -0,0 +1,75 @@
+package com.yahh.uid.benchmark;
+
+import com.yahh.uid.buffer.BufferPaddingExecutor;
+import com.yahh.uid.buffer.RingBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author 邹磊
+ * @version 1.0
+ * @description: BufferPaddingExecutor.paddingBuffer()将空环填满的耗时
+ * @date 2021/4/24 15:40
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PaddingBenchmark {
+
+    private static final int SEQUENCE_SIZE = 8192;
+    private static final int BUFFER_SIZE = SEQUENCE_SIZE << 3;
+
+    private RingBuffer ringBuffer;
+    private BufferPaddingExecutor bufferPaddingExecutor;
+
+    private final long[] drained = new long[BUFFER_SIZE];
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ringBuffer = new RingBuffer(BUFFER_SIZE);
+        bufferPaddingExecutor = new BufferPaddingExecutor(ringBuffer,
+                (momentInSecond, consumer) -> consumer.accept(momentInSecond << 22, SEQUENCE_SIZE), false) {
+            @Override
+            public void asyncPadding() {
+            }
+        };
+        ringBuffer.setBufferPaddingExecutor(bufferPaddingExecutor);
+        ringBuffer.setRejectedPutHandler((ringBuffer, uid) -> { });
+    }
+
+    /**
+     * 每次填充之前先把环取空
+     */
+    @Setup(Level.Invocation)
+    public void drain() {
+        while (ringBuffer.poll(drained, 0, BUFFER_SIZE) > 0) {
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        bufferPaddingExecutor.shutdown();
+    }
+
+
+    @Benchmark
+    public long paddingBuffer() {
+        bufferPaddingExecutor.paddingBuffer();
+        return ringBuffer.getTail();
+    }
+}
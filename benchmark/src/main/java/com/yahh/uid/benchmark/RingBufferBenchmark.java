@@ -0,0 +1,98 @@
+package com.yahh.uid.benchmark;
+
+import com.yahh.uid.buffer.BufferPaddingExecutor;
+import com.yahh.uid.buffer.RingBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author 邹磊
+ * @version 1.0
+ * @description: 不经过填充线程，单独测试RingBuffer的put/take
+ * @date 2021/4/24 15:02
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Group)
+public class RingBufferBenchmark {
+
+    private static final int BUFFER_SIZE = 8192 << 3;
+    private static final int RANGE_SIZE = 8192;
+
+    private RingBuffer ringBuffer;
+    private BufferPaddingExecutor bufferPaddingExecutor;
+
+    private long nextUid;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ringBuffer = new RingBuffer(BUFFER_SIZE);
+        // 只测试RingBuffer本身，低于阈值时不触发填充
+        bufferPaddingExecutor = new BufferPaddingExecutor(ringBuffer, (momentInSecond, consumer) -> false, false) {
+            @Override
+            public void asyncPadding() {
+            }
+        };
+        ringBuffer.setBufferPaddingExecutor(bufferPaddingExecutor);
+        ringBuffer.setRejectedPutHandler((ringBuffer, uid) -> { });
+        ringBuffer.setRejectedTakeHandler(ringBuffer -> { });
+
+        ringBuffer.putRange(nextUid, BUFFER_SIZE / 2);
+        nextUid += BUFFER_SIZE / 2;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        bufferPaddingExecutor.shutdown();
+    }
+
+
+    /**
+     * 单线程依次take/put，环内数据量保持不变
+     */
+    @Benchmark
+    @Group("takePut")
+    @GroupThreads(1)
+    public long takePut() {
+        long uid = ringBuffer.poll();
+        ringBuffer.put(nextUid++);
+        return uid;
+    }
+
+
+    /**
+     * 一个线程按秒批量填充，多个线程同时take
+     */
+    @Benchmark
+    @Group("concurrent")
+    @GroupThreads(1)
+    public int putRange() {
+        int put = ringBuffer.putRange(nextUid, RANGE_SIZE);
+        nextUid += put;
+        return put;
+    }
+
+    @Benchmark
+    @Group("concurrent")
+    @GroupThreads(4)
+    public long poll() {
+        return ringBuffer.poll();
+    }
+}
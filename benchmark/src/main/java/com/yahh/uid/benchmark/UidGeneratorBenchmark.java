@@ -0,0 +1,120 @@
+package com.yahh.uid.benchmark;
+
+import com.yahh.uid.buffer.TakeWaitStrategy;
+import com.yahh.uid.impl.CachedUidGenerator;
+import com.yahh.uid.impl.DefaultUidGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author 邹磊
+ * @version 1.0
+ * @description: standard与cached两种模式下getUID()的吞吐量与延迟，分别在1/4/16/64个线程下测试
+ * @date 2021/4/24 14:18
+ *
+ * 注意：standard模式受每秒 maxSequence + 1 个id的限制，超出之后测到的是等待下一秒的开销
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UidGeneratorBenchmark {
+
+    private DefaultUidGenerator defaultUidGenerator;
+    private CachedUidGenerator cachedUidGenerator;
+
+    private long uid;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        defaultUidGenerator = new DefaultUidGenerator();
+        defaultUidGenerator.setWorkerIdAssigner(new InMemoryWorkerIdAssigner());
+        defaultUidGenerator.afterPropertiesSet();
+
+        cachedUidGenerator = new CachedUidGenerator();
+        cachedUidGenerator.setWorkerIdAssigner(new InMemoryWorkerIdAssigner());
+        // 持续压测时消费速度可能超过填充速度，等待填充而不是抛出异常
+        cachedUidGenerator.setTakeWaitStrategy(TakeWaitStrategy.PARK);
+        cachedUidGenerator.afterPropertiesSet();
+
+        uid = cachedUidGenerator.getUID();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        cachedUidGenerator.destroy();
+        defaultUidGenerator.destroy();
+    }
+
+
+    @Benchmark
+    @Threads(1)
+    public long standard_1() {
+        return defaultUidGenerator.getUID();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long standard_4() {
+        return defaultUidGenerator.getUID();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public long standard_16() {
+        return defaultUidGenerator.getUID();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public long standard_64() {
+        return defaultUidGenerator.getUID();
+    }
+
+
+    @Benchmark
+    @Threads(1)
+    public long cached_1() {
+        return cachedUidGenerator.getUID();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long cached_4() {
+        return cachedUidGenerator.getUID();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public long cached_16() {
+        return cachedUidGenerator.getUID();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public long cached_64() {
+        return cachedUidGenerator.getUID();
+    }
+
+
+    @Benchmark
+    @Threads(1)
+    public String pareUID() {
+        return cachedUidGenerator.pareUID(uid);
+    }
+}
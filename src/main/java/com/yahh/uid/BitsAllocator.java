@@ -18,12 +18,24 @@ public class BitsAllocator {
      */
     public static final int TOTAL_BITS =1 << 6;
 
+    /**
+     * 毫秒模式推荐布局
+     */
+    public static final int MILLIS_TIMESTAMP_BITS = 38;
+    public static final int MILLIS_WORKER_ID_BITS = 16;
+    public static final int MILLIS_SEQUENCE_BITS = 9;
+
     /**
      * 一个id的构成由一下组成（默认配置）
      * sign 1位 保证生成的id为正数
      * second 28位 代表当前的时间戳（距离某一个时间点，秒级）
      * worker_node_id 22位 机器id 最多记录400w次机器启动
      * sequence 13位 每秒下的并发序列号，最多支持每秒8192次并发
+     *
+     * 毫秒模式（timestampUnit为MILLISECONDS）下推荐使用 38/16/9 的布局：
+     * millisecond 38位 约8.7年
+     * worker_node_id 16位 最多记录65536次机器启动
+     * sequence 9位 每毫秒512个，即每秒最多512000个
      */
     private int signBits = 1;
     private final int timestampBits;
@@ -31,7 +43,7 @@ public class BitsAllocator {
     private final int sequenceBits;
 
     /**
-     * 各个结构的最大值
+     * 各个结构的最大值，毫秒模式下maxDeltaSeconds即为最大的毫秒差
      */
     private final long maxDeltaSeconds;
     private final long maxWorkerId;
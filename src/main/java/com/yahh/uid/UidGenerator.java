@@ -16,4 +16,23 @@ public interface UidGenerator {
 
     String pareUID(long uid);
 
+
+    /**
+     * 批量获取n个uid
+     */
+    default long[] getUIDs(int n) throws YahhUIDException {
+        long[] uids = new long[n];
+        fill(uids);
+        return uids;
+    }
+
+    /**
+     * 使用uid填满dest，实现类应一次预占一段连续的序列号/slot，避免逐个获取
+     */
+    default void fill(long[] dest) throws YahhUIDException {
+        for (int i = 0; i < dest.length; i++) {
+            dest[i] = getUID();
+        }
+    }
+
 }
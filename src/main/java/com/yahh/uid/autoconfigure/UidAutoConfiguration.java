@@ -2,21 +2,38 @@ package com.yahh.uid.autoconfigure;
 
 import com.yahh.uid.autoconfigure.property.CachedUidProperties;
 import com.yahh.uid.autoconfigure.property.UidProperties;
+import com.yahh.uid.autoconfigure.property.WorkerProperties;
 import com.yahh.uid.buffer.RejectedPutBufferHandler;
 import com.yahh.uid.buffer.RejectedTakeBufferHandler;
+import com.yahh.uid.clock.UidClock;
 import com.yahh.uid.impl.CachedUidGenerator;
 import com.yahh.uid.impl.DefaultUidGenerator;
+import com.yahh.uid.jmx.UidGeneratorMBeanRegistrar;
+import com.yahh.uid.metrics.UidGeneratorMetricsRegistrar;
+import com.yahh.uid.worker.CachingWorkerIdAssigner;
 import com.yahh.uid.worker.DisposableWorkerIdAssigner;
+import com.yahh.uid.worker.FileLockWorkerIdAssigner;
+import com.yahh.uid.worker.LeasingWorkerIdAssigner;
 import com.yahh.uid.worker.WorkerIdAssigner;
+import com.yahh.uid.worker.dao.JdbcWorkerNodeDAO;
+import com.yahh.uid.worker.dao.WorkerNodeDAO;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.mybatis.spring.annotation.MapperScan;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.util.Assert;
+
+import javax.sql.DataSource;
+import java.io.File;
 
 /**
  * @author 邹磊
@@ -27,7 +44,6 @@ import org.springframework.context.annotation.Lazy;
 @Configuration
 @ConditionalOnClass({DefaultUidGenerator.class, CachedUidGenerator.class})
 @EnableConfigurationProperties(UidProperties.class)
-@MapperScan("com.yahh.uid.worker.dao")
 public class UidAutoConfiguration {
 
     @Autowired
@@ -39,6 +55,9 @@ public class UidAutoConfiguration {
     @Autowired(required = false)
     RejectedTakeBufferHandler rejectedTakeBufferHandler;
 
+    @Autowired(required = false)
+    UidClock uidClock;
+
     @Bean
     @ConditionalOnProperty(prefix = "uid", name = "type", havingValue = "standard", matchIfMissing = true)
     @Lazy
@@ -49,7 +68,14 @@ public class UidAutoConfiguration {
         uidGenerator.setWorkerIdBits(uidProperties.getWorkerBits());
         uidGenerator.setSeqBits(uidProperties.getSeqBits());
         uidGenerator.setEpochStr(uidProperties.getEpochStr());
+        uidGenerator.setTimestampUnit(uidProperties.getTimestampUnit());
+        uidGenerator.setMaxBorrowSeconds(uidProperties.getMaxBorrowSeconds());
+        uidGenerator.setEnableBackward(uidProperties.isEnableBackward());
+        uidGenerator.setMaxBackwardSeconds(uidProperties.getMaxBackwardSeconds());
         uidGenerator.setWorkerIdAssigner(workerIdAssigner);
+        if (uidClock != null) {
+            uidGenerator.setClock(uidClock);
+        }
         return uidGenerator;
     }
 
@@ -62,7 +88,11 @@ public class UidAutoConfiguration {
         uidGenerator.setWorkerIdBits(uidProperties.getWorkerBits());
         uidGenerator.setSeqBits(uidProperties.getSeqBits());
         uidGenerator.setEpochStr(uidProperties.getEpochStr());
+        uidGenerator.setTimestampUnit(uidProperties.getTimestampUnit());
         uidGenerator.setWorkerIdAssigner(workerIdAssigner);
+        if (uidClock != null) {
+            uidGenerator.setClock(uidClock);
+        }
 
         if(uidProperties.getCached() == null){
             return uidGenerator;
@@ -71,6 +101,15 @@ public class UidAutoConfiguration {
         CachedUidProperties cachedProperties = uidProperties.getCached();
         uidGenerator.setBoostPower(cachedProperties.getBoostPower());
         uidGenerator.setPaddingFactor(cachedProperties.getPaddingFactor());
+        uidGenerator.setLeaseSize(cachedProperties.getLeaseSize());
+        uidGenerator.setShardCount(cachedProperties.getShardCount());
+        uidGenerator.setTakeWaitStrategy(cachedProperties.getTakeWaitStrategy());
+        uidGenerator.setTakeTimeout(cachedProperties.getTakeTimeout());
+        uidGenerator.setAdaptiveSizing(cachedProperties.isAdaptiveSizing());
+        uidGenerator.setMinBoostPower(cachedProperties.getMinBoostPower());
+        uidGenerator.setPaddingHeadroom(cachedProperties.getPaddingHeadroom());
+        uidGenerator.setVirtualThreads(cachedProperties.isVirtualThreads());
+        uidGenerator.setMaxPaddingBorrowSeconds(cachedProperties.getMaxBorrowSeconds());
         if(cachedProperties.getScheduleInterval() != null){
             uidGenerator.setScheduleInterval(cachedProperties.getScheduleInterval());
         }
@@ -85,10 +124,129 @@ public class UidAutoConfiguration {
     }
 
 
+    /**
+     * 在本机共享目录中通过文件锁分配workerId，不需要数据库
+     * 借用未来时间的上限需要小于 crashWaitSeconds - 1，超过时启动失败；cached模式未配置maxBorrowSeconds时取 crashWaitSeconds - 2
+     */
     @Bean
     @ConditionalOnMissingBean
-    WorkerIdAssigner workerIdAssigner(){
-        return new DisposableWorkerIdAssigner();
+    @ConditionalOnProperty(prefix = "uid.worker", name = "assigner", havingValue = "file")
+    WorkerIdAssigner fileLockWorkerIdAssigner(){
+        WorkerProperties workerProperties = uidProperties.getWorker();
+        FileLockWorkerIdAssigner workerIdAssigner = new FileLockWorkerIdAssigner(new File(workerProperties.getDirectory()));
+        workerIdAssigner.setMinWorkerId(workerProperties.getMinWorkerId());
+        workerIdAssigner.setMaxWorkerId(workerProperties.getMaxWorkerId() != null
+                ? workerProperties.getMaxWorkerId() : ~(-1L << uidProperties.getWorkerBits()));
+        workerIdAssigner.setCrashWaitSeconds(workerProperties.getCrashWaitSeconds());
+
+        Long maxBorrowSeconds = "cached".equals(uidProperties.getType())
+                ? (uidProperties.getCached() == null ? null : uidProperties.getCached().getMaxBorrowSeconds())
+                : Long.valueOf(uidProperties.getMaxBorrowSeconds());
+        Assert.isTrue(maxBorrowSeconds == null || maxBorrowSeconds <= workerIdAssigner.getMaxBorrowSeconds(),
+                "Max borrow seconds " + maxBorrowSeconds + " must be less than uid.worker.crashWaitSeconds - 1");
+        return workerIdAssigner;
+    }
+
+
+    /**
+     * 基于WORKER_NODE表分配workerId，使用方没有提供WorkerIdAssigner时生效
+     * file模式或使用方自己提供WorkerIdAssigner时不扫描mapper，不依赖DataSource
+     */
+    @Configuration
+    @ConditionalOnMissingBean(WorkerIdAssigner.class)
+    @ConditionalOnExpression("'${uid.worker.assigner:disposable}' != 'file'")
+    static class WorkerNodeConfiguration {
+
+        @Autowired
+        UidProperties uidProperties;
+
+        /**
+         * classpath中存在MyBatis时使用mapper
+         * 条件中的类名使用字符串，MyBatis不在classpath中时不会加载本类上的@MapperScan
+         */
+        @Configuration
+        @ConditionalOnClass(name = {"org.mybatis.spring.annotation.MapperScan", "org.apache.ibatis.session.SqlSessionFactory"})
+        @MapperScan("com.yahh.uid.worker.dao")
+        static class MybatisWorkerNodeConfiguration {
+        }
+
+        /**
+         * 没有MyBatis时直接使用DataSource，不构建SqlSessionFactory，需要spring-jdbc（spring-boot-starter-jdbc）
+         */
+        @Configuration
+        @ConditionalOnMissingClass("org.apache.ibatis.session.SqlSessionFactory")
+        @ConditionalOnClass(name = "org.springframework.jdbc.datasource.DataSourceUtils")
+        static class JdbcWorkerNodeConfiguration {
+
+            @Bean
+            @ConditionalOnMissingBean
+            WorkerNodeDAO workerNodeDAO(DataSource dataSource) {
+                return new JdbcWorkerNodeDAO(dataSource);
+            }
+        }
+
+        @Bean
+        @ConditionalOnMissingBean
+        @ConditionalOnProperty(prefix = "uid.worker", name = "assigner", havingValue = "disposable", matchIfMissing = true)
+        WorkerIdAssigner workerIdAssigner(ObjectProvider<WorkerNodeDAO> workerNodeDAO){
+            String cacheFile = uidProperties.getWorker().getCacheFile();
+            if (cacheFile == null) {
+                return new DisposableWorkerIdAssigner();
+            }
+            return new CachingWorkerIdAssigner(new DisposableWorkerIdAssigner(workerNodeDAO.getObject()), new File(cacheFile));
+        }
+
+
+        /**
+         * 以租约方式分配workerId，只接管workerBits能表示的id
+         * 本地租约按生成器借用未来时间的上限提前失效，上限需要小于 leaseSeconds - heartbeatSeconds - 2，启动时校验；
+         * cached模式未配置maxBorrowSeconds时由租约决定上限
+         */
+        @Bean
+        @ConditionalOnMissingBean
+        @ConditionalOnProperty(prefix = "uid.worker", name = "assigner", havingValue = "leasing")
+        WorkerIdAssigner leasingWorkerIdAssigner(){
+            WorkerProperties workerProperties = uidProperties.getWorker();
+            LeasingWorkerIdAssigner workerIdAssigner = new LeasingWorkerIdAssigner();
+            workerIdAssigner.setLeaseSeconds(workerProperties.getLeaseSeconds());
+            workerIdAssigner.setHeartbeatSeconds(workerProperties.getHeartbeatSeconds());
+            workerIdAssigner.setMaxWorkerId(~(-1L << uidProperties.getWorkerBits()));
+            if ("cached".equals(uidProperties.getType())) {
+                if (uidProperties.getCached() != null) {
+                    workerIdAssigner.setMaxBorrowSeconds(uidProperties.getCached().getMaxBorrowSeconds());
+                }
+            } else {
+                workerIdAssigner.setMaxBorrowSeconds(uidProperties.getMaxBorrowSeconds());
+            }
+            return workerIdAssigner;
+        }
+    }
+
+
+    /**
+     * 生成器初始化后注册JMX MBean，可通过uid.jmx.enabled=false关闭
+     * BeanPostProcessor需要用static方法声明，避免提前初始化本配置类
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "uid.jmx", name = "enabled", havingValue = "true", matchIfMissing = true)
+    static UidGeneratorMBeanRegistrar uidGeneratorMBeanRegistrar() {
+        return new UidGeneratorMBeanRegistrar();
+    }
+
+
+    /**
+     * classpath中存在Micrometer时注册生成器指标，可通过uid.metrics.enabled=false关闭
+     * 生成器初始化完成后才绑定指标，不会提前触发@Lazy生成器的初始化
+     */
+    @Configuration
+    @ConditionalOnClass(MeterRegistry.class)
+    @ConditionalOnProperty(prefix = "uid.metrics", name = "enabled", havingValue = "true", matchIfMissing = true)
+    static class UidMetricsConfiguration {
+
+        @Bean
+        static UidGeneratorMetricsRegistrar uidGeneratorMetricsRegistrar(ObjectProvider<MeterRegistry> meterRegistry) {
+            return new UidGeneratorMetricsRegistrar(meterRegistry);
+        }
     }
 
 }
@@ -1,5 +1,8 @@
 package com.yahh.uid.autoconfigure.property;
 
+import com.yahh.uid.buffer.RingBuffer;
+import com.yahh.uid.buffer.TakeWaitStrategy;
+
 /**
  * @author 邹磊
  * @version 1.0
@@ -24,6 +27,100 @@ public class CachedUidProperties {
      */
     private int paddingFactor = 50;
 
+    /**
+     * 每个线程一次租用的uid个数，租用的uid在本线程内直接返回，不再竞争RingBuffer
+     * 默认:0, 即不启用
+     */
+    private int leaseSize = 0;
+
+    /**
+     * RingBuffer分片数, 必须是2的幂, 每个分片拥有独立的cursor与 1/shardCount 的序列号空间
+     * 默认:1, 即不分片
+     */
+    private int shardCount = 1;
+
+    /**
+     * RingBuffer为空时的等待策略: reject, spin, yield, park
+     * 默认:reject, 即直接交给RejectedTakeBufferHandler
+     */
+    private TakeWaitStrategy takeWaitStrategy = TakeWaitStrategy.REJECT;
+
+    /**
+     * 使用等待策略时获取uid的最长等待时间, 单位:毫秒, 默认:1000
+     */
+    private long takeTimeout = RingBuffer.DEFAULT_TAKE_TIMEOUT_MILLIS;
+
+    /**
+     * 是否按获取速率自动扩缩容RingBuffer, 开启后boostPower作为上限
+     * 默认:false
+     */
+    private boolean adaptiveSizing = false;
+
+    /**
+     * 自适应模式下RingBuffer size的下限, 启动时只分配并填充下限大小
+     * 默认:0, 即 maxSequence + 1
+     */
+    private int minBoostPower = 0;
+
+    /**
+     * 预测填充: 按获取速率预计RingBuffer在该时间内取空时提前填充, 单位:毫秒
+     * 默认:0, 即不启用, 只在低于paddingFactor时填充
+     */
+    private long paddingHeadroom = 0L;
+
+    /**
+     * 填充线程是否使用虚拟线程, 需要JDK 21及以上, 不支持时仍使用普通线程
+     * 默认:false
+     */
+    private boolean virtualThreads = false;
+
+    /**
+     * 填充时最多借用未来多少秒, 达到上限后暂停填充, 等时钟前进再继续
+     * 默认:不配置此项, 即不限制; uid.worker.assigner=leasing时默认为 (leaseSeconds - heartbeatSeconds - 3) / 2,
+     * uid.worker.assigner=file时默认为 crashWaitSeconds - 2
+     */
+    private Long maxBorrowSeconds;
+
+    public Long getMaxBorrowSeconds() {
+        return maxBorrowSeconds;
+    }
+
+    public void setMaxBorrowSeconds(Long maxBorrowSeconds) {
+        this.maxBorrowSeconds = maxBorrowSeconds;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    public long getPaddingHeadroom() {
+        return paddingHeadroom;
+    }
+
+    public void setPaddingHeadroom(long paddingHeadroom) {
+        this.paddingHeadroom = paddingHeadroom;
+    }
+
+    public boolean isAdaptiveSizing() {
+        return adaptiveSizing;
+    }
+
+    public void setAdaptiveSizing(boolean adaptiveSizing) {
+        this.adaptiveSizing = adaptiveSizing;
+    }
+
+    public int getMinBoostPower() {
+        return minBoostPower;
+    }
+
+    public void setMinBoostPower(int minBoostPower) {
+        this.minBoostPower = minBoostPower;
+    }
+
     public int getBoostPower() {
         return boostPower;
     }
@@ -48,4 +145,36 @@ public class CachedUidProperties {
         this.paddingFactor = paddingFactor;
     }
 
+    public int getLeaseSize() {
+        return leaseSize;
+    }
+
+    public void setLeaseSize(int leaseSize) {
+        this.leaseSize = leaseSize;
+    }
+
+    public int getShardCount() {
+        return shardCount;
+    }
+
+    public void setShardCount(int shardCount) {
+        this.shardCount = shardCount;
+    }
+
+    public TakeWaitStrategy getTakeWaitStrategy() {
+        return takeWaitStrategy;
+    }
+
+    public void setTakeWaitStrategy(TakeWaitStrategy takeWaitStrategy) {
+        this.takeWaitStrategy = takeWaitStrategy;
+    }
+
+    public long getTakeTimeout() {
+        return takeTimeout;
+    }
+
+    public void setTakeTimeout(long takeTimeout) {
+        this.takeTimeout = takeTimeout;
+    }
+
 }
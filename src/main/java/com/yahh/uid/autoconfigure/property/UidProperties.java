@@ -1,7 +1,10 @@
 package com.yahh.uid.autoconfigure.property;
 
+import com.yahh.uid.BitsAllocator;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  * @author 邹磊
  * @version 1.0
@@ -13,36 +16,70 @@ public class UidProperties {
 
     /**
      * delta seconds所占位数
+     * 默认:28, 毫秒模式下默认:38
      */
-    private int timeBits = 28;
+    private Integer timeBits;
 
     /**
      * workid所占位数
+     * 默认:22, 毫秒模式下默认:16
      */
-    private int workerBits = 22;
+    private Integer workerBits;
 
     /**
      * 每秒下的并发序列所占位数
+     * 默认:13, 毫秒模式下默认:9
+     */
+    private Integer seqBits;
+
+    /**
+     * 时间戳单位, seconds或milliseconds
+     * 默认:seconds
+     */
+    private TimeUnit timestampUnit = TimeUnit.SECONDS;
+
+    /**
+     * 时间基点, 格式为yyyy-MM-dd, 按东八区零点计算
+     * 默认:"2021-03-01", 与此前生成器实际使用的时间基点一致
+     */
+    private String epochStr = "2021-03-01";
+
+    /**
+     * standard模式下当前秒的序列号用完时, 最多借用未来多少秒
+     * 默认:0, 即不借用, 等待到下一秒
      */
-    private int seqBits = 13;
+    private long maxBorrowSeconds = 0L;
 
     /**
-     * 时间基点
+     * 是否容忍时钟回拨, 默认:true
      */
-    private String epochStr = "2021-03-15";
+    private boolean enableBackward = true;
+
+    /**
+     * 时钟回拨最长容忍时间（秒）, 默认:1
+     */
+    private long maxBackwardSeconds = 1L;
 
     /**
      * 缓存uid配置
      */
     private CachedUidProperties cached;
 
+    /**
+     * workerId分配配置
+     */
+    private WorkerProperties worker = new WorkerProperties();
+
     /**
      * UidGenerator类型，standard表示标准版，cached表示使用了ringbuffer
      */
     private String type = "standard";
 
     public int getTimeBits() {
-        return timeBits;
+        if (timeBits != null) {
+            return timeBits;
+        }
+        return isMillis() ? BitsAllocator.MILLIS_TIMESTAMP_BITS : 28;
     }
 
     public void setTimeBits(int timeBits) {
@@ -50,7 +87,10 @@ public class UidProperties {
     }
 
     public int getWorkerBits() {
-        return workerBits;
+        if (workerBits != null) {
+            return workerBits;
+        }
+        return isMillis() ? BitsAllocator.MILLIS_WORKER_ID_BITS : 22;
     }
 
     public void setWorkerBits(int workerBits) {
@@ -58,13 +98,28 @@ public class UidProperties {
     }
 
     public int getSeqBits() {
-        return seqBits;
+        if (seqBits != null) {
+            return seqBits;
+        }
+        return isMillis() ? BitsAllocator.MILLIS_SEQUENCE_BITS : 13;
     }
 
     public void setSeqBits(int seqBits) {
         this.seqBits = seqBits;
     }
 
+    public TimeUnit getTimestampUnit() {
+        return timestampUnit;
+    }
+
+    public void setTimestampUnit(TimeUnit timestampUnit) {
+        this.timestampUnit = timestampUnit;
+    }
+
+    private boolean isMillis() {
+        return timestampUnit == TimeUnit.MILLISECONDS;
+    }
+
     public String getEpochStr() {
         return epochStr;
     }
@@ -73,6 +128,30 @@ public class UidProperties {
         this.epochStr = epochStr;
     }
 
+    public long getMaxBorrowSeconds() {
+        return maxBorrowSeconds;
+    }
+
+    public void setMaxBorrowSeconds(long maxBorrowSeconds) {
+        this.maxBorrowSeconds = maxBorrowSeconds;
+    }
+
+    public boolean isEnableBackward() {
+        return enableBackward;
+    }
+
+    public void setEnableBackward(boolean enableBackward) {
+        this.enableBackward = enableBackward;
+    }
+
+    public long getMaxBackwardSeconds() {
+        return maxBackwardSeconds;
+    }
+
+    public void setMaxBackwardSeconds(long maxBackwardSeconds) {
+        this.maxBackwardSeconds = maxBackwardSeconds;
+    }
+
     public CachedUidProperties getCached() {
         return cached;
     }
@@ -81,6 +160,14 @@ public class UidProperties {
         this.cached = cached;
     }
 
+    public WorkerProperties getWorker() {
+        return worker;
+    }
+
+    public void setWorker(WorkerProperties worker) {
+        this.worker = worker;
+    }
+
     public String getType() {
         return type;
     }
@@ -0,0 +1,127 @@
+package com.yahh.uid.autoconfigure.property;
+
+/**
+ * @author 邹磊
+ * @version 1.0
+ * @description: workerId分配的属性配置
+ * @date 2021/5/18 16:20
+ */
+public class WorkerProperties {
+
+    /**
+     * workerId分配方式
+     * disposable: 每次启动插入一行WORKER_NODE, 使用自增id
+     * leasing: 以租约方式分配, 下线或租约过期的id可以被复用
+     * file: 在本机共享目录中通过文件锁分配, 不需要数据库, 只保证同一台机器上的进程之间不重复
+     * 默认:disposable
+     */
+    private String assigner = "disposable";
+
+    /**
+     * leasing模式下租约时长, 单位:秒, 超过该时间未续租的id可以被其它节点接管
+     * 默认:60
+     */
+    private long leaseSeconds = 60L;
+
+    /**
+     * leasing模式下续租间隔, 单位:秒, 需要小于leaseSeconds - 2
+     * 生成器借用未来时间的上限需要小于leaseSeconds - heartbeatSeconds - 2, 本地租约相应提前失效
+     * 默认:20
+     */
+    private long heartbeatSeconds = 20L;
+
+    /**
+     * disposable模式下缓存workerId的本地文件, 正常关闭后重启时直接复用, 不访问数据库
+     * 默认:不配置此项, 即不缓存
+     */
+    private String cacheFile;
+
+    /**
+     * file模式下锁文件所在的目录, 同一台机器上的所有进程需要配置为同一个目录
+     * 默认:${java.io.tmpdir}/yahh-uid-worker
+     */
+    private String directory = System.getProperty("java.io.tmpdir") + "/yahh-uid-worker";
+
+    /**
+     * file模式下分配的最小workerId, 多台机器时给每台机器配置不重叠的区间
+     * 默认:0
+     */
+    private long minWorkerId = 0L;
+
+    /**
+     * file模式下分配的最大workerId
+     * 默认:不配置此项, 即workerBits能表示的最大值
+     */
+    private Long maxWorkerId;
+
+    /**
+     * file模式下锁文件的上一个持有者异常退出时等待的时间, 单位:秒, 需要大于生成器借用未来时间的上限加1秒, 否则启动失败
+     * cached模式未配置maxBorrowSeconds时借用上限取crashWaitSeconds - 2
+     * 默认:5
+     */
+    private long crashWaitSeconds = 5L;
+
+    public String getAssigner() {
+        return assigner;
+    }
+
+    public void setAssigner(String assigner) {
+        this.assigner = assigner;
+    }
+
+    public long getLeaseSeconds() {
+        return leaseSeconds;
+    }
+
+    public void setLeaseSeconds(long leaseSeconds) {
+        this.leaseSeconds = leaseSeconds;
+    }
+
+    public long getHeartbeatSeconds() {
+        return heartbeatSeconds;
+    }
+
+    public void setHeartbeatSeconds(long heartbeatSeconds) {
+        this.heartbeatSeconds = heartbeatSeconds;
+    }
+
+    public String getCacheFile() {
+        return cacheFile;
+    }
+
+    public void setCacheFile(String cacheFile) {
+        this.cacheFile = cacheFile;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public long getMinWorkerId() {
+        return minWorkerId;
+    }
+
+    public void setMinWorkerId(long minWorkerId) {
+        this.minWorkerId = minWorkerId;
+    }
+
+    public Long getMaxWorkerId() {
+        return maxWorkerId;
+    }
+
+    public void setMaxWorkerId(Long maxWorkerId) {
+        this.maxWorkerId = maxWorkerId;
+    }
+
+    public long getCrashWaitSeconds() {
+        return crashWaitSeconds;
+    }
+
+    public void setCrashWaitSeconds(long crashWaitSeconds) {
+        this.crashWaitSeconds = crashWaitSeconds;
+    }
+}
@@ -1,17 +1,22 @@
 package com.yahh.uid.buffer;
 
+import com.yahh.uid.clock.TickingUidClock;
+import com.yahh.uid.clock.UidClock;
 import com.yahh.uid.utils.NamingThreadFactory;
 import com.yahh.uid.utils.PaddedAtomicLong;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.util.Assert;
 
-import java.util.List;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
 
 /**
  * @author 邹磊
@@ -25,15 +30,27 @@ public class BufferPaddingExecutor {
     /**
      * 线程名称
      */
-    private static final String WORKER_NAME = "RingBuffer-Padding-Worker";
+    public static final String WORKER_NAME = "RingBuffer-Padding-Worker";
     /**
      * 定时线程名称
      */
     private static final String SCHEDULE_NAME = "RingBuffer-Padding-Schedule";
+    /**
+     * 预测线程名称
+     */
+    private static final String PREDICTOR_NAME = "RingBuffer-Padding-Predictor";
+    /**
+     * 预测线程的最大采样间隔，单位毫秒
+     */
+    private static final long MAX_PREDICT_INTERVAL_MILLIS = 10L;
     /**
      * 默认的定时时间
      */
     private static final long DEFAULT_SCHEDULE_INTERVAL = 5 * 60L; // 5 minutes
+    /**
+     * 自适应模式下环的目标容量为这段时间内的获取量
+     */
+    private static final long ADAPTIVE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
 
 
     /**
@@ -41,21 +58,91 @@ public class BufferPaddingExecutor {
      */
     private final AtomicBoolean running;
 
+    /**
+     * 是否已经有一个异步填充请求在等待或执行，保证同一时刻最多只有一个填充请求
+     */
+    private final AtomicBoolean paddingRequested = new AtomicBoolean(false);
+
+    /**
+     * 填充线程是否已经启动，第一次异步填充时才创建
+     */
+    private final AtomicBoolean padderStarted = new AtomicBoolean(false);
+
+    private volatile boolean shutdown;
+
+    /**
+     * 实际执行填充的次数
+     */
+    private final AtomicLong paddingCount = new AtomicLong();
+
+    /**
+     * 填充累计耗时，单位纳秒
+     */
+    private final AtomicLong paddingNanos = new AtomicLong();
+
     /**
      * 存储消费过的最后的时间
      * 借用未来的时间
      * 缓存填充
+     * 单位与生成器的timestampUnit一致
      */
     private final PaddedAtomicLong lastSecond;
 
-    private final RingBuffer ringBuffer;
+    /**
+     * 当前填充的环，自适应模式下扩缩容时会被替换
+     */
+    private volatile RingBuffer ringBuffer;
 
-    private final BufferedUidProvider bufferedUidProvider;
+    private final UidClock clock;
+    private final TimeUnit timeUnit;
 
     /**
-     * 通过该线程池立即对ringbuffer进行填充
+     * 构造时获取的共享时钟，shutdown时释放；使用方传入时钟时为null
      */
-    private final ExecutorService bufferPadExecutors;
+    private TickingUidClock sharedClock;
+
+    /**
+     * lastSecond最多领先当前时间多少个时间单位，小于0表示不限制
+     */
+    private volatile long maxBorrowAhead = -1L;
+
+    /**
+     * 因借用达到上限而提前结束填充的次数
+     */
+    private final AtomicLong throttledCount = new AtomicLong();
+
+    /**
+     * 自适应模式下环大小的上下限，maxBufferSize为0表示固定大小
+     */
+    private int minBufferSize;
+    private int maxBufferSize;
+
+    /**
+     * 新环开始对外提供uid时的回调
+     */
+    private Consumer<RingBuffer> resizeListener;
+
+    /**
+     * 上一次填充时的cursor与时间，用于估算获取速率
+     */
+    private long lastSampleCursor;
+    private long lastSampleNanos;
+
+    private final AtomicLong resizeCount = new AtomicLong();
+
+    private final BufferedUidRangeProvider bufferedUidProvider;
+
+    /**
+     * 将provider提供的区间放入ringbuffer，提前创建好避免每次填充产生新对象
+     */
+    private final BufferedUidRangeProvider.RangeConsumer rangeConsumer = this::putRange;
+
+    /**
+     * 唯一的填充线程，平时park，有填充请求时被unpark
+     * 填充本身由running保证串行，多个线程只会空闲占用栈空间
+     */
+    private volatile Thread padder;
+    private ThreadFactory padderThreadFactory = new NamingThreadFactory(WORKER_NAME, true, null);
     /**
      * 通过定时线程城填充
      */
@@ -64,6 +151,18 @@ public class BufferPaddingExecutor {
     /** Schedule interval Unit as seconds */
     private long scheduleInterval = DEFAULT_SCHEDULE_INTERVAL;
 
+    /**
+     * 预测填充：按获取速率预计取空的时间小于paddingHeadroom毫秒时提前填充，0表示不启用
+     */
+    private volatile long paddingHeadroom;
+    private ScheduledExecutorService bufferPadPredictor;
+    private volatile boolean started;
+
+    /**
+     * 预测填充触发的次数
+     */
+    private final AtomicLong predictivePaddingCount = new AtomicLong();
+
 
     public BufferPaddingExecutor(RingBuffer ringBuffer, BufferedUidProvider bufferedUidProvider) {
         this(ringBuffer,bufferedUidProvider,true);
@@ -71,17 +170,38 @@ public class BufferPaddingExecutor {
 
 
     public BufferPaddingExecutor(RingBuffer ringBuffer, BufferedUidProvider bufferedUidProvider, Boolean usingSchedule) {
+        this(ringBuffer, BufferedUidRangeProvider.of(bufferedUidProvider), usingSchedule);
+    }
+
+
+    public BufferPaddingExecutor(RingBuffer ringBuffer, BufferedUidRangeProvider bufferedUidProvider) {
+        this(ringBuffer, bufferedUidProvider, true);
+    }
+
+
+    /**
+     * 使用共享的{@link TickingUidClock}，shutdown时释放
+     */
+    public BufferPaddingExecutor(RingBuffer ringBuffer, BufferedUidRangeProvider bufferedUidProvider, Boolean usingSchedule) {
+        this(ringBuffer, bufferedUidProvider, usingSchedule, TickingUidClock.acquireShared(), TimeUnit.SECONDS);
+        this.sharedClock = (TickingUidClock) clock;
+    }
+
+
+    /**
+     * @param timeUnit 时间戳单位，毫秒模式下每次填充一毫秒的id
+     */
+    public BufferPaddingExecutor(RingBuffer ringBuffer, BufferedUidRangeProvider bufferedUidProvider, Boolean usingSchedule,
+                                 UidClock clock, TimeUnit timeUnit) {
         this.running = new AtomicBoolean(false);
-        this.lastSecond = new PaddedAtomicLong(TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()));
+        this.clock = clock;
+        this.timeUnit = timeUnit;
+        this.lastSecond = new PaddedAtomicLong(clock.currentTime(timeUnit) - 1);
         this.ringBuffer = ringBuffer;
+        this.lastSampleCursor = ringBuffer.getCursor();
+        this.lastSampleNanos = System.nanoTime();
         this.bufferedUidProvider = bufferedUidProvider;
 
-        /**
-         * 初始化线程池
-         */
-        int coreCount = Runtime.getRuntime().availableProcessors();
-        bufferPadExecutors = Executors.newFixedThreadPool(coreCount * 2, new NamingThreadFactory(WORKER_NAME));
-
         /**
          * 初始化定时线程池
          */
@@ -96,30 +216,136 @@ public class BufferPaddingExecutor {
 
     public void paddingBuffer(){
 
-        LOGGER.info("Ready to padding buffer lastSecond:{}. {}",lastSecond.get(),ringBuffer);
+        LOGGER.debug("Ready to padding buffer lastSecond:{}. {}",lastSecond.get(),ringBuffer);
+        this.doPaddingBuffer();
+    }
+
 
+    /**
+     * 填充直到环满，返回是否因借用达到上限而提前结束
+     */
+    private boolean doPaddingBuffer() {
         //校验是否正在填充中
         if (!running.compareAndSet(false,true)){
-            LOGGER.info("Padding buffer is still running. {}",ringBuffer);
-            return;
+            LOGGER.debug("Padding buffer is still running. {}",ringBuffer);
+            return false;
         }
 
-        boolean isFullRingBuffer = false;
-
-        while (!isFullRingBuffer) {
-            List<Long> uidList = bufferedUidProvider.proide(lastSecond.incrementAndGet());
-            for (Long uid : uidList) {
-                isFullRingBuffer = !ringBuffer.put(uid);
-                if (isFullRingBuffer) {
-                    break;
+        long startNanos = 0L;
+        try {
+            if (isBorrowLimited()) {
+                throttledCount.incrementAndGet();
+                return true;
+            }
+            paddingCount.incrementAndGet();
+            startNanos = System.nanoTime();
+
+            RingBuffer retired = this.resizeIfNecessary();
+            boolean isFullRingBuffer = false;
+
+            try {
+                while (!isFullRingBuffer) {
+                    /**
+                     * 新环需要先放入一批uid再发布，之后才检查借用上限
+                     */
+                    if (retired == null && isBorrowLimited()) {
+                        throttledCount.incrementAndGet();
+                        return true;
+                    }
+                    isFullRingBuffer = !bufferedUidProvider.provide(this.nextSecond(), rangeConsumer);
+
+                    /**
+                     * 新环中已经有一批uid之后再切换，旧环取空的调用方转到新环上
+                     */
+                    if (retired != null) {
+                        retired.retire(ringBuffer);
+                        resizeListener.accept(ringBuffer);
+                        resizeCount.incrementAndGet();
+                        retired = null;
+                    }
                 }
+            } catch (RuntimeException | Error e) {
+                /**
+                 * 新环还没有发布时provider抛出异常，恢复旧环继续作为填充目标，否则调用方一直停留在不再被填充的旧环上
+                 * 新环中已放入的uid随新环一起丢弃，不会重复
+                 */
+                if (retired != null) {
+                    this.ringBuffer = retired;
+                    this.lastSampleCursor = retired.getCursor();
+                    LOGGER.warn("Padding failed before publishing the resized ring buffer, keep {}", retired);
+                }
+                throw e;
+            }
+            return false;
+        } finally {
+            if (startNanos != 0L) {
+                paddingNanos.addAndGet(System.nanoTime() - startNanos);
             }
+            // 填充结束
+            running.set(false);
+            LOGGER.debug("End to padding buffer lastSecond:{}. {}", lastSecond.get(), ringBuffer);
+        }
+    }
+
+
+    /**
+     * 下一次填充使用的时间，不早于当前时间，避免低流量时uid中的时间远远落后
+     * 只在持有running时调用
+     */
+    private long nextSecond() {
+        long next = Math.max(lastSecond.get() + 1, clock.currentTime(timeUnit));
+        lastSecond.set(next);
+        return next;
+    }
+
+
+    private boolean isBorrowLimited() {
+        return maxBorrowAhead >= 0 && lastSecond.get() + 1 - clock.currentTime(timeUnit) > maxBorrowAhead;
+    }
+
+
+    /**
+     * 根据上一次填充以来的获取速率计算环的目标大小，需要扩缩容时创建新环并作为填充目标
+     * 返回被替换的旧环，不需要扩缩容时返回null
+     */
+    private RingBuffer resizeIfNecessary() {
+        RingBuffer current = ringBuffer;
+        long now = System.nanoTime();
+        long cursor = current.getCursor();
+        long consumed = cursor - lastSampleCursor;
+        long elapsed = now - lastSampleNanos;
+        lastSampleCursor = cursor;
+        lastSampleNanos = now;
+
+        if (maxBufferSize == 0 || elapsed <= 0) {
+            return null;
         }
 
-        // 填充结束
-        running.compareAndSet(true, false);
-        LOGGER.info("End to padding buffer lastSecond:{}. {}", lastSecond.get(), ringBuffer);
+        /**
+         * 目标大小为一个窗口内的获取量，扩容立即进行，缩容要求目标不超过当前的1/4，避免来回抖动
+         */
+        long demand = consumed * ADAPTIVE_WINDOW_NANOS / elapsed;
+        int bufferSize = current.getBufferSize();
+        int targetSize = (int) Math.min(Math.max(nextPowerOfTwo(demand), minBufferSize), maxBufferSize);
+        if (targetSize == bufferSize || (targetSize < bufferSize && targetSize > bufferSize >> 2)) {
+            return null;
+        }
+
+        RingBuffer resized = current.resize(targetSize);
+        this.ringBuffer = resized;
+        this.lastSampleCursor = resized.getCursor();
+        LOGGER.info("Resize ring buffer from {} to {}, take rate:{}/s", bufferSize, targetSize, demand);
+        return current;
+    }
+
 
+    private static long nextPowerOfTwo(long value) {
+        return value <= 1 ? 1 : Long.highestOneBit(value - 1) << 1;
+    }
+
+
+    private boolean putRange(long firstUid, int count) {
+        return ringBuffer.padRange(firstUid, count) == count;
     }
 
 
@@ -130,32 +356,163 @@ public class BufferPaddingExecutor {
         if (null != bufferPadSchedule) {
             bufferPadSchedule.scheduleWithFixedDelay(() -> paddingBuffer(), scheduleInterval, scheduleInterval, TimeUnit.SECONDS);
         }
+        started = true;
+        if (paddingHeadroom > 0) {
+            startPredictor();
+        }
     }
 
 
     /**
-     * 通过线程池异步填充slot
+     * 启动预测线程，只启动一次，之后修改paddingHeadroom只影响判断，不影响采样间隔
+     */
+    private synchronized void startPredictor() {
+        if (bufferPadPredictor != null || shutdown) {
+            return;
+        }
+        long interval = Math.max(1L, Math.min(MAX_PREDICT_INTERVAL_MILLIS, paddingHeadroom / 2));
+        bufferPadPredictor = Executors.newSingleThreadScheduledExecutor(new NamingThreadFactory(PREDICTOR_NAME, true, null));
+        bufferPadPredictor.scheduleAtFixedRate(this::predictPadding, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+
+    /**
+     * 采样获取速率，预计在paddingHeadroom内取空时提前填充
+     * 环中剩余超过3/4时不填充，否则填充时大部分序列号放不进环而被放弃
+     */
+    private void predictPadding() {
+        long headroom = paddingHeadroom;
+        RingBuffer current = ringBuffer;
+        current.sampleTakeRate();
+
+        if (current.getAvailable() > current.getBufferSize() - (current.getBufferSize() >> 2)) {
+            return;
+        }
+        if (current.getMillisToEmpty() < headroom) {
+            predictivePaddingCount.incrementAndGet();
+            asyncPadding();
+        }
+    }
+
+
+    /**
+     * 唤醒填充线程异步填充slot
+     * 已有填充请求在等待或执行时直接返回，不再重复唤醒
      */
     public void asyncPadding() {
-        bufferPadExecutors.submit(this::paddingBuffer);
+        if (paddingRequested.get() || !paddingRequested.compareAndSet(false, true)) {
+            return;
+        }
+        if (shutdown) {
+            paddingRequested.set(false);
+            throw new RejectedExecutionException("BufferPaddingExecutor has been shut down");
+        }
+
+        if (padderStarted.compareAndSet(false, true)) {
+            Thread thread = padderThreadFactory.newThread(this::padLoop);
+            padder = thread;
+            thread.start();
+        } else {
+            Thread thread = padder;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+
+
+    /**
+     * 填充线程主循环，先检查请求再park，unpark先于park发生时park立即返回，不会丢失唤醒
+     */
+    private void padLoop() {
+        while (!shutdown) {
+            if (!paddingRequested.get()) {
+                LockSupport.park(this);
+                continue;
+            }
+
+            boolean throttled = false;
+            try {
+                throttled = doPaddingBuffer();
+            } catch (Exception e) {
+                LOGGER.error("Padding buffer exception. {}", ringBuffer, e);
+            }
+
+            /**
+             * 借用达到上限时保留填充请求，等到下一个时间单位再继续填充，使填充速度跟随时钟
+             */
+            if (throttled && !shutdown) {
+                long waitMillis = timeUnit.toMillis(clock.currentTime(timeUnit) + 1) - clock.currentMillis();
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(Math.max(waitMillis, 1L)));
+                continue;
+            }
+            paddingRequested.set(false);
+        }
     }
 
     /**
-     * 关闭线程池
+     * 停止填充线程与定时线程
      */
-    public void shutdown() {
-        if (!bufferPadExecutors.isShutdown()) {
-            bufferPadExecutors.shutdown();
+    public synchronized void shutdown() {
+        shutdown = true;
+        Thread thread = padder;
+        if (thread != null) {
+            LockSupport.unpark(thread);
         }
         if (null != bufferPadSchedule && !bufferPadSchedule.isShutdown()) {
             bufferPadSchedule.shutdown();
         }
+        if (null != bufferPadPredictor && !bufferPadPredictor.isShutdown()) {
+            bufferPadPredictor.shutdown();
+        }
+        if (sharedClock != null) {
+            TickingUidClock.releaseShared(sharedClock);
+            sharedClock = null;
+        }
     }
 
     public boolean isRunning(){
         return running.get();
     }
 
+    public long getPaddingCount() {
+        return paddingCount.get();
+    }
+
+    public long getPaddingNanos() {
+        return paddingNanos.get();
+    }
+
+    public RingBuffer getRingBuffer() {
+        return ringBuffer;
+    }
+
+    public long getResizeCount() {
+        return resizeCount.get();
+    }
+
+    public long getPredictivePaddingCount() {
+        return predictivePaddingCount.get();
+    }
+
+    public long getThrottledCount() {
+        return throttledCount.get();
+    }
+
+    /**
+     * 最近填充的uid中的时间，以构造时的时间单位为单位
+     */
+    public long getLastSecond() {
+        return lastSecond.get();
+    }
+
+    /**
+     * 最近填充的uid中的时间领先当前时间多少，以unit为单位，为负数时说明落后于当前时间
+     */
+    public long getDrift(TimeUnit unit) {
+        return unit.convert(lastSecond.get() - clock.currentTime(timeUnit), timeUnit);
+    }
+
 
     /**
      * Setters
@@ -165,6 +522,60 @@ public class BufferPaddingExecutor {
         this.scheduleInterval = scheduleInterval;
     }
 
+    /**
+     * 限制填充时最多借用未来多少秒，达到上限后填充暂停，等时钟前进再继续
+     * @param maxBorrowSeconds 小于0表示不限制
+     */
+    public void setMaxBorrowSeconds(long maxBorrowSeconds) {
+        this.maxBorrowAhead = maxBorrowSeconds < 0 ? -1L : timeUnit.convert(maxBorrowSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 指定创建填充线程的工厂，需要在第一次填充之前设置
+     */
+    public void setPadderThreadFactory(ThreadFactory padderThreadFactory) {
+        Assert.notNull(padderThreadFactory, "Padder thread factory can't be null!");
+        this.padderThreadFactory = padderThreadFactory;
+    }
+
+    /**
+     * 开启预测填充，运行中修改立即生效，设置为0即停止预测填充
+     * @param paddingHeadroom 环中至少保留按当前获取速率可用多少毫秒的uid
+     */
+    public void setPaddingHeadroom(long paddingHeadroom) {
+        Assert.isTrue(paddingHeadroom >= 0, "Padding headroom can't be negative!");
+        this.paddingHeadroom = paddingHeadroom;
+        if (started && paddingHeadroom > 0) {
+            startPredictor();
+        }
+    }
+
+    public long getPaddingHeadroom() {
+        return paddingHeadroom;
+    }
+
+    /**
+     * 填充时最多借用未来多少秒，小于0表示不限制
+     */
+    public long getMaxBorrowSeconds() {
+        long maxBorrow = maxBorrowAhead;
+        return maxBorrow < 0 ? -1L : TimeUnit.SECONDS.convert(maxBorrow, timeUnit);
+    }
+
+    /**
+     * 开启自适应大小，环在minBufferSize与maxBufferSize之间按获取速率扩缩容
+     * @param resizeListener 新环开始对外提供uid时回调，调用方需要把后续的获取切换到新环
+     */
+    public void setAdaptiveSizing(int minBufferSize, int maxBufferSize, Consumer<RingBuffer> resizeListener) {
+        Assert.isTrue(Integer.bitCount(minBufferSize) == 1 && Integer.bitCount(maxBufferSize) == 1,
+                "RingBuffer size must be a power of 2");
+        Assert.isTrue(minBufferSize <= maxBufferSize, "Min buffer size can't exceed max buffer size");
+        Assert.notNull(resizeListener, "Resize listener can't be null");
+        this.minBufferSize = minBufferSize;
+        this.maxBufferSize = maxBufferSize;
+        this.resizeListener = resizeListener;
+    }
+
 
 
 }
@@ -0,0 +1,50 @@
+package com.yahh.uid.buffer;
+
+import java.util.List;
+
+/**
+ * @author 邹磊
+ * @version 1.0
+ * @description: 以(firstUid, count)区间的形式提供uid，填充时不产生装箱的Long与List
+ * @date 2021/4/11 15:20
+ */
+@FunctionalInterface
+public interface BufferedUidRangeProvider {
+
+    /**
+     * 将momentInSecond这一秒内的uid按连续区间依次交给consumer
+     * consumer返回false表示不再接收（环已满），此时停止提供并返回false
+     */
+    boolean provide(long momentInSecond, RangeConsumer consumer);
+
+
+    /**
+     * 将旧的{@link BufferedUidProvider}适配为区间形式，列表中连续的uid合并为一个区间
+     */
+    static BufferedUidRangeProvider of(BufferedUidProvider bufferedUidProvider) {
+        return (momentInSecond, consumer) -> {
+            List<Long> uidList = bufferedUidProvider.proide(momentInSecond);
+
+            int rangeStart = 0;
+            for (int i = 1; i <= uidList.size(); i++) {
+                if (i == uidList.size() || uidList.get(i) != uidList.get(i - 1) + 1) {
+                    if (!consumer.accept(uidList.get(rangeStart), i - rangeStart)) {
+                        return false;
+                    }
+                    rangeStart = i;
+                }
+            }
+            return true;
+        };
+    }
+
+
+    @FunctionalInterface
+    interface RangeConsumer {
+
+        /**
+         * 接收 firstUid ~ firstUid + count - 1，全部接收返回true
+         */
+        boolean accept(long firstUid, int count);
+    }
+}
@@ -7,7 +7,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.util.Assert;
 
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * @author 邹磊
@@ -24,10 +27,33 @@ public class RingBuffer {
     private static final long CAN_TAKE_FLAG = 1L;
     public static final int DEFAULT_PADDING_PERCENT = 50;
 
+    /**
+     * 环已空时poll的返回值，uid的符号位恒为0，-1不会是合法的uid
+     */
+    public static final long EMPTY_UID = -1L;
+
+    /**
+     * 使用等待策略时，take()默认最长等待时间
+     */
+    public static final long DEFAULT_TAKE_TIMEOUT_MILLIS = 1000L;
+
+    /**
+     * 每个flag占用一个缓存行(64 bytes = 8 * long)，避免相邻slot的flag之间产生伪共享
+     */
+    private static final int FLAG_STRIDE_SHIFT = 3;
+
+    /**
+     * 获取速率EWMA的时间窗口，越大越平滑
+     */
+    private static final long TAKE_RATE_WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
     private final int bufferSize;
     private final long indexMask;
     private final long[] slots;
-    private final PaddedAtomicLong[] flags;
+    /**
+     * 所有slot的flag平铺在一个数组中，第i个slot的flag位于 i << FLAG_STRIDE_SHIFT
+     */
+    private final AtomicLongArray flags;
 
 
     /**
@@ -35,18 +61,61 @@ public class RingBuffer {
      */
     private final AtomicLong tail = new PaddedAtomicLong(START_POINT);
 
+    /**
+     * 生产者已经占用的位置，tail只会在占用的slot写完之后才推进到这里
+     */
+    private final AtomicLong claimedTail = new PaddedAtomicLong(START_POINT);
+
     /**
      * 最后消费过的位置
      */
     private final AtomicLong cursor = new PaddedAtomicLong(START_POINT);
 
-    private final int paddingThreshold;
+    /**
+     * 可以在运行中修改，take时只多一次volatile读
+     */
+    private volatile int paddingFactor;
+    private volatile int paddingThreshold;
+
+    /**
+     * 剩余可消费slot低于paddingThreshold的take次数，只计数不打日志
+     * 以下计数在扩缩容时由新环沿用，保证单调递增
+     */
+    private LongAdder lowWaterCount = new LongAdder();
+
+    /**
+     * 触发拒绝策略的次数，只在拒绝时累加
+     * 填充线程以环满作为一次填充的结束，这时放不下的部分不计入rejectedPutCount
+     */
+    private LongAdder rejectedPutCount = new LongAdder();
+    private LongAdder rejectedTakeCount = new LongAdder();
+
+    /**
+     * 之前被替换的环中已经取出的uid个数
+     */
+    private long retiredTakenCount;
 
     private RejectedPutBufferHandler rejectedPutBufferHandler = this::discardPutBuffer;
     private RejectedTakeBufferHandler rejectedTakeBufferHandler = this::exceptionRejectedTakeBuffer;
 
     private BufferPaddingExecutor bufferPaddingExecutor;
 
+    private TakeWaitStrategy takeWaitStrategy = TakeWaitStrategy.REJECT;
+    private long takeTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_TAKE_TIMEOUT_MILLIS);
+
+    /**
+     * 自适应扩缩容时替代当前环的新环
+     * 当前环取空之后，仍持有旧引用的调用方转到新环上获取，切换过程对take()不可见
+     */
+    private volatile RingBuffer successor;
+
+    /**
+     * 获取速率（个/秒）的EWMA，由填充预测线程通过{@link #sampleTakeRate()}定时采样cursor计算，不增加take的开销
+     */
+    private volatile double takeRate;
+    private long sampleCursor = START_POINT;
+    private long sampleNanos = System.nanoTime();
+
 
     public RingBuffer(int bufferSize) {
         this(bufferSize,DEFAULT_PADDING_PERCENT);
@@ -62,97 +131,312 @@ public class RingBuffer {
         this.bufferSize = bufferSize;
         this.indexMask = bufferSize -1;
         this.slots = new long[bufferSize];
-        this.flags = initFlags(bufferSize);
+        this.flags = new AtomicLongArray(bufferSize << FLAG_STRIDE_SHIFT);
+        this.paddingFactor = paddingFactor;
         this.paddingThreshold = bufferSize * paddingFactor / 100;
     }
 
 
-    public synchronized boolean put(long uid) {
-        long currentTail = tail.get();
-        long currentCursor = cursor.get();
+    /**
+     * 创建一个大小为newBufferSize、其余配置与当前环相同的空环
+     */
+    public RingBuffer resize(int newBufferSize) {
+        RingBuffer ringBuffer = new RingBuffer(newBufferSize, paddingFactor);
+        ringBuffer.bufferPaddingExecutor = bufferPaddingExecutor;
+        ringBuffer.takeWaitStrategy = takeWaitStrategy;
+        ringBuffer.takeTimeoutNanos = takeTimeoutNanos;
+        ringBuffer.rejectedPutBufferHandler = rejectedPutBufferHandler;
+        ringBuffer.rejectedTakeBufferHandler = rejectedTakeBufferHandler;
+        ringBuffer.takeRate = takeRate;
+        ringBuffer.lowWaterCount = lowWaterCount;
+        ringBuffer.rejectedPutCount = rejectedPutCount;
+        ringBuffer.rejectedTakeCount = rejectedTakeCount;
+        ringBuffer.retiredTakenCount = getTakenCount();
+        return ringBuffer;
+    }
 
-        /**
-         * 判断buffer环是否已经填满
-         */
-        long distance = currentTail - (currentCursor == START_POINT ? 0 : currentCursor);
-        if (distance == bufferSize -1){
-            rejectedPutBufferHandler.rejectPutBuffer(this,uid);
-            return false;
-        }
 
-        //计算下一个可放入数据的slot
-        int nextTailIndex = calSlotIndex(currentTail + 1);
-        //首先判断下这个位置是否可以放入
-        if (flags[nextTailIndex].get() != CAN_PUT_FLAG){
-            rejectedPutBufferHandler.rejectPutBuffer(this,uid);
-            return false;
+    /**
+     * 由successor替代当前环，当前环剩余的uid取完之后转到successor上获取
+     */
+    public void retire(RingBuffer successor) {
+        Assert.notNull(successor, "Successor can't be null");
+        this.successor = successor;
+    }
+
+
+    public boolean put(long uid) {
+        return putRange(uid, 1) == 1;
+    }
+
+
+    /**
+     * 无锁批量放入 firstUid ~ firstUid + count - 1
+     * 通过一次CAS在claimedTail上占用一段连续的slot，写完之后按占用顺序推进tail，一次性发布给消费者
+     * 返回实际放入的个数，环满时剩余部分交给rejectedPutBufferHandler
+     */
+    public int putRange(long firstUid, int count) {
+        return putRange(firstUid, count, true);
+    }
+
+
+    /**
+     * 填充线程使用的批量放入，每次填充都会放到环满为止，最后一段放不下是正常结束
+     * 剩余部分同样交给rejectedPutBufferHandler，但不计入rejectedPutCount
+     */
+    public int padRange(long firstUid, int count) {
+        return putRange(firstUid, count, false);
+    }
+
+
+    private int putRange(long firstUid, int count, boolean countRejected) {
+        Assert.isTrue(count > 0, "Put count must be positive");
+
+        long currentClaimed;
+        long nextClaimed;
+        do {
+            currentClaimed = claimedTail.get();
+            long currentCursor = cursor.get();
+
+            /**
+             * 判断buffer环是否已经填满
+             */
+            long distance = currentClaimed - (currentCursor == START_POINT ? 0 : currentCursor);
+            long free = bufferSize - 1 - distance;
+            if (free <= 0) {
+                if (countRejected) {
+                    rejectedPutCount.increment();
+                }
+                rejectedPutBufferHandler.rejectPutBuffer(this, firstUid);
+                return 0;
+            }
+            nextClaimed = currentClaimed + Math.min(free, count);
+        } while (!claimedTail.compareAndSet(currentClaimed, nextClaimed));
+
+        int claimedCount = (int) (nextClaimed - currentClaimed);
+        for (int i = 0; i < claimedCount; i++) {
+            int slotIndex = calSlotIndex(currentClaimed + 1 + i);
+
+            /**
+             * cursor已经越过该slot，但消费者可能还没来得及把flag置为可放入，稍等即可
+             */
+            while (getFlag(slotIndex) != CAN_PUT_FLAG) {
+                Thread.yield();
+            }
+            slots[slotIndex] = firstUid + i;
+            flags.lazySet(slotIndex << FLAG_STRIDE_SHIFT, CAN_TAKE_FLAG);
         }
+
         /**
-         * 首先往slots中放入uid
-         */
-        slots[nextTailIndex] = uid;
-        /**
-         * 然后将flags置为可消费
-         */
-        flags[nextTailIndex].set(CAN_TAKE_FLAG);
-        /**
-         * tail++  这里有个问题  tail是一直++的吗  不能清除？
+         * 等待之前占用的生产者发布完成，再推进tail，保证tail之前的slot都是可消费的
          */
-        tail.incrementAndGet();
+        while (tail.get() != currentClaimed) {
+            Thread.yield();
+        }
+        tail.set(nextClaimed);
 
-        return true;
+        if (claimedCount < count) {
+            if (countRejected) {
+                rejectedPutCount.increment();
+            }
+            rejectedPutBufferHandler.rejectPutBuffer(this, firstUid + claimedCount);
+        }
+        return claimedCount;
     }
 
 
     public long take() {
-        // 获取当前消费的节点
-        long currentCursor = cursor.get();
-        long nextCursor = cursor.updateAndGet(old -> old == tail.get() ? old : old + 1);
+        long uid = poll();
+        if (uid == EMPTY_UID && takeWaitStrategy != TakeWaitStrategy.REJECT) {
+            uid = waitAndPoll(takeWaitStrategy, takeTimeoutNanos);
+        }
+        if (uid == EMPTY_UID) {
+            // 说明已经消费到了最后
+            rejectedTakeCount.increment();
+            rejectedTakeBufferHandler.rejectTakeBuffer(this);
+
+            // 拒绝策略没有抛出异常时再尝试一次
+            uid = poll();
+            Assert.isTrue(uid != EMPTY_UID, "Curosr not in can take status");
+        }
+        return uid;
+    }
+
+
+    /**
+     * 获取一个uid，环已空时按等待策略最多等待timeout，超时后按拒绝策略处理
+     * 等待策略为REJECT时使用PARK等待
+     */
+    public long take(long timeout, TimeUnit unit) {
+        long uid = poll();
+        if (uid == EMPTY_UID) {
+            TakeWaitStrategy strategy = takeWaitStrategy == TakeWaitStrategy.REJECT ? TakeWaitStrategy.PARK : takeWaitStrategy;
+            uid = waitAndPoll(strategy, unit.toNanos(timeout));
+        }
+        if (uid == EMPTY_UID) {
+            rejectedTakeCount.increment();
+            rejectedTakeBufferHandler.rejectTakeBuffer(this);
+
+            uid = poll();
+            Assert.isTrue(uid != EMPTY_UID, "Curosr not in can take status");
+        }
+        return uid;
+    }
+
 
-        // 判断下一个要消费的节点要大于等于已经消费过的节点
-        Assert.isTrue(nextCursor >= currentCursor, "Curosr can't move back");
+    private long waitAndPoll(TakeWaitStrategy strategy, long timeoutNanos) {
+        long deadline = System.nanoTime() + timeoutNanos;
+        for (int attempts = 0; ; attempts++) {
+            long uid = poll();
+            if (uid != EMPTY_UID) {
+                return uid;
+            }
+
+            long remainingNanos = deadline - System.nanoTime();
+            if (remainingNanos <= 0) {
+                return EMPTY_UID;
+            }
+            strategy.idle(attempts, remainingNanos);
+        }
+    }
+
+
+    /**
+     * 获取一个uid，环已空时返回{@link #EMPTY_UID}，不会触发拒绝策略
+     */
+    public long poll() {
+        long currentCursor;
+        long nextCursor;
+        long currentTail;
+        do {
+            currentCursor = cursor.get();
+            currentTail = tail.get();
+            nextCursor = currentCursor == currentTail ? currentCursor : currentCursor + 1;
+        } while (nextCursor != currentCursor && !cursor.compareAndSet(currentCursor, nextCursor));
 
         // 如果剩余可消费 slot 小于 paddingThreshold，则进行异步填充
-        long currentTail = tail.get();
-        if (currentTail - currentCursor < paddingThreshold) {
-            LOGGER.info("Reach the padding threshold:{}. tail:{}, cursor:{}, rest:{}", paddingThreshold, currentTail,
-                    nextCursor, currentTail - nextCursor);
+        if (currentTail - nextCursor < paddingThreshold) {
+            lowWaterCount.increment();
             bufferPaddingExecutor.asyncPadding();
         }
 
         if (nextCursor == currentCursor) {
-            // 说明已经消费到了最后
-            rejectedTakeBufferHandler.rejectTakeBuffer(this);
+            RingBuffer next = successor;
+            return next == null ? EMPTY_UID : next.poll();
         }
 
         int nextCursorIndex = calSlotIndex(nextCursor);
-        Assert.isTrue(flags[nextCursorIndex].get() == CAN_TAKE_FLAG, "Curosr not in can take status");
+        Assert.isTrue(getFlag(nextCursorIndex) == CAN_TAKE_FLAG, "Curosr not in can take status");
 
         /**
          * 到这里就可以真正的取出id了
          */
         long uid = slots[nextCursorIndex];
-        flags[nextCursorIndex].set(CAN_PUT_FLAG);
+        setFlag(nextCursorIndex, CAN_PUT_FLAG);
 
         return uid;
     }
 
 
-    private int calSlotIndex(long sequence) {
-        return (int) (sequence & indexMask);
+    /**
+     * 批量获取uid，环已空时触发拒绝策略，拒绝策略没有抛出异常时再尝试一次，仍为空则返回0
+     */
+    public int take(long[] dest, int offset, int length) {
+        int taken = poll(dest, offset, length);
+        if (taken == 0 && takeWaitStrategy != TakeWaitStrategy.REJECT) {
+            long deadline = System.nanoTime() + takeTimeoutNanos;
+            for (int attempts = 0; taken == 0; attempts++) {
+                long remainingNanos = deadline - System.nanoTime();
+                if (remainingNanos <= 0) {
+                    break;
+                }
+                takeWaitStrategy.idle(attempts, remainingNanos);
+                taken = poll(dest, offset, length);
+            }
+        }
+        if (taken == 0) {
+            // 说明已经消费到了最后
+            rejectedTakeCount.increment();
+            rejectedTakeBufferHandler.rejectTakeBuffer(this);
+
+            // 拒绝策略没有抛出异常时再尝试一次
+            taken = poll(dest, offset, length);
+        }
+        return taken;
     }
 
+
     /**
-     * 初始化flags
+     * 批量获取uid
+     * 通过一次CAS占用cursor之后最多length个可消费的slot，返回实际取出的个数，环已空时返回0
      */
-    private PaddedAtomicLong[] initFlags(int bufferSize){
+    public int poll(long[] dest, int offset, int length) {
+        Assert.isTrue(length > 0, "Take length must be positive");
+
+        long currentCursor;
+        long nextCursor;
+        long currentTail;
+        do {
+            currentCursor = cursor.get();
+            currentTail = tail.get();
+            nextCursor = Math.min(currentCursor + length, currentTail);
+        } while (nextCursor != currentCursor && !cursor.compareAndSet(currentCursor, nextCursor));
+
+        // 如果剩余可消费 slot 小于 paddingThreshold，则进行异步填充
+        if (currentTail - nextCursor < paddingThreshold) {
+            lowWaterCount.increment();
+            bufferPaddingExecutor.asyncPadding();
+        }
 
-        PaddedAtomicLong[] flags = new PaddedAtomicLong[bufferSize];
-        for (int i = 0; i < bufferSize; i++){
-            flags[i] = new PaddedAtomicLong(CAN_PUT_FLAG);
+        int count = (int) (nextCursor - currentCursor);
+        if (count == 0) {
+            RingBuffer next = successor;
+            return next == null ? 0 : next.poll(dest, offset, length);
         }
+        for (int i = 0; i < count; i++) {
+            int slotIndex = calSlotIndex(currentCursor + 1 + i);
+            Assert.isTrue(getFlag(slotIndex) == CAN_TAKE_FLAG, "Curosr not in can take status");
 
-        return flags;
+            dest[offset + i] = slots[slotIndex];
+            setFlag(slotIndex, CAN_PUT_FLAG);
+        }
+
+        return count;
+    }
+
+
+    /**
+     * 根据上次采样以来cursor的推进更新获取速率，只允许一个线程调用
+     */
+    public double sampleTakeRate() {
+        long now = System.nanoTime();
+        long currentCursor = cursor.get();
+        long elapsed = now - sampleNanos;
+        if (elapsed <= 0) {
+            return takeRate;
+        }
+
+        double rate = (currentCursor - sampleCursor) * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+        double alpha = 1 - Math.exp(-(double) elapsed / TAKE_RATE_WINDOW_NANOS);
+        double ewma = takeRate + alpha * (rate - takeRate);
+
+        this.takeRate = ewma;
+        this.sampleCursor = currentCursor;
+        this.sampleNanos = now;
+        return ewma;
+    }
+
+
+    private int calSlotIndex(long sequence) {
+        return (int) (sequence & indexMask);
+    }
+
+    private long getFlag(int slotIndex) {
+        return flags.get(slotIndex << FLAG_STRIDE_SHIFT);
+    }
+
+    private void setFlag(int slotIndex, long flag) {
+        flags.set(slotIndex << FLAG_STRIDE_SHIFT, flag);
     }
 
 
@@ -187,6 +471,68 @@ public class RingBuffer {
         return bufferSize;
     }
 
+    public int getPaddingThreshold() {
+        return paddingThreshold;
+    }
+
+    public int getPaddingFactor() {
+        return paddingFactor;
+    }
+
+    /**
+     * 运行中修改填充阈值
+     */
+    public void setPaddingFactor(int paddingFactor) {
+        Assert.isTrue(paddingFactor > 0 && paddingFactor < 100, "padding factor must be in (0, 100)");
+        this.paddingFactor = paddingFactor;
+        this.paddingThreshold = bufferSize * paddingFactor / 100;
+    }
+
+    /**
+     * 当前可消费的uid个数
+     */
+    public long getAvailable() {
+        long currentCursor = cursor.get();
+        return tail.get() - currentCursor;
+    }
+
+    /**
+     * 最近一次采样得到的获取速率，单位:个/秒
+     */
+    public double getTakeRate() {
+        return takeRate;
+    }
+
+    /**
+     * 按当前获取速率预计多少毫秒后取空，速率为0时返回Long.MAX_VALUE
+     */
+    public long getMillisToEmpty() {
+        double rate = takeRate;
+        if (rate <= 0) {
+            return Long.MAX_VALUE;
+        }
+        return (long) (getAvailable() * 1000 / rate);
+    }
+
+    public long getLowWaterCount() {
+        return lowWaterCount.sum();
+    }
+
+    public long getRejectedPutCount() {
+        return rejectedPutCount.sum();
+    }
+
+    public long getRejectedTakeCount() {
+        return rejectedTakeCount.sum();
+    }
+
+    /**
+     * 累计取出的uid个数，包括扩缩容之前的环
+     */
+    public long getTakenCount() {
+        return retiredTakenCount + cursor.get() - START_POINT;
+    }
+
     /**
      * Setters
      */
@@ -194,6 +540,16 @@ public class RingBuffer {
         this.bufferPaddingExecutor = bufferPaddingExecutor;
     }
 
+    public void setTakeWaitStrategy(TakeWaitStrategy takeWaitStrategy) {
+        Assert.notNull(takeWaitStrategy, "TakeWaitStrategy can't be null");
+        this.takeWaitStrategy = takeWaitStrategy;
+    }
+
+    public void setTakeTimeout(long timeout, TimeUnit unit) {
+        Assert.isTrue(timeout > 0, "Take timeout must be positive");
+        this.takeTimeoutNanos = unit.toNanos(timeout);
+    }
+
     public void setRejectedPutHandler(RejectedPutBufferHandler rejectedPutHandler) {
         this.rejectedPutBufferHandler = rejectedPutHandler;
     }
@@ -208,6 +564,7 @@ public class RingBuffer {
         builder.append("RingBuffer [bufferSize=").append(bufferSize)
                 .append(", tail=").append(tail)
                 .append(", cursor=").append(cursor)
+                .append(", available=").append(getAvailable())
                 .append(", paddingThreshold=").append(paddingThreshold).append("]");
 
         return builder.toString();
@@ -0,0 +1,58 @@
+package com.yahh.uid.buffer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * @author 邹磊
+ * @version 1.0
+ * @description: RingBuffer为空时take的等待策略
+ * @date 2021/4/17 16:32
+ *
+ * 除REJECT外，都会在超时之前反复尝试获取，等待填充线程发布新的slot。
+ * 等待过程中不持有任何监视器，只使用yield/LockSupport，虚拟线程中使用也不会pin住载体线程。
+ */
+public enum TakeWaitStrategy {
+
+    /**
+     * 不等待，直接交给RejectedTakeBufferHandler（默认，与原有行为一致）
+     */
+    REJECT,
+
+    /**
+     * 忙等，延迟最低，但会占满一个CPU
+     */
+    SPIN,
+
+    /**
+     * 每次尝试之间让出CPU
+     */
+    YIELD,
+
+    /**
+     * 每次尝试之间park，park时间从1微秒开始翻倍，最长1毫秒
+     */
+    PARK;
+
+
+    private static final long MIN_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(1);
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+
+    /**
+     * 第attempts次获取失败之后的等待
+     */
+    void idle(int attempts, long remainingNanos) {
+        switch (this) {
+            case SPIN:
+                break;
+            case YIELD:
+                Thread.yield();
+                break;
+            default:
+                long parkNanos = attempts < 10 ? MIN_PARK_NANOS << attempts : MAX_PARK_NANOS;
+                LockSupport.parkNanos(Math.min(Math.min(parkNanos, MAX_PARK_NANOS), remainingNanos));
+                break;
+        }
+    }
+}
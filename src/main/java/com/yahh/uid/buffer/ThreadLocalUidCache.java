@@ -0,0 +1,110 @@
+package com.yahh.uid.buffer;
+
+import com.yahh.uid.exception.YahhUIDException;
+import org.springframework.util.Assert;
+
+/**
+ * @author 邹磊
+ * @version 1.0
+ * @description: 线程本地的uid租用缓存
+ * @date 2021/4/12 21:06
+ *
+ * 每个线程通过一次CAS从RingBuffer中租用一小段uid（默认64个），之后的获取只读写本线程的数据，
+ * 不再竞争RingBuffer的cursor。
+ * 注意：不同线程拿到的uid之间不再保证严格按获取时间递增。
+ * 线程退出时未使用完的uid随ThreadLocal一起丢弃，只会产生空洞，不会重复；
+ * 调用{@link #invalidate()}后，各线程已租用但未使用的uid全部作废。
+ */
+public class ThreadLocalUidCache {
+
+    public static final int DEFAULT_LEASE_SIZE = 64;
+
+    private final int leaseSize;
+
+    private final UidSource uidSource;
+
+    private final ThreadLocal<Lease> leases;
+
+    /**
+     * 每次invalidate递增，租约的generation与之不一致时视为作废
+     */
+    private volatile int generation;
+
+
+    public ThreadLocalUidCache(UidSource uidSource) {
+        this(DEFAULT_LEASE_SIZE, uidSource);
+    }
+
+
+    public ThreadLocalUidCache(int leaseSize, UidSource uidSource) {
+        Assert.isTrue(leaseSize > 0, "Lease size must be positive");
+        Assert.notNull(uidSource, "UidSource can't be null");
+
+        this.leaseSize = leaseSize;
+        this.uidSource = uidSource;
+        this.leases = ThreadLocal.withInitial(() -> new Lease(leaseSize));
+    }
+
+
+    public long take() {
+        Lease lease = leases.get();
+        if (lease.position == lease.limit || lease.generation != generation) {
+            renew(lease);
+        }
+        return lease.uids[lease.position++];
+    }
+
+
+    /**
+     * 作废所有线程当前持有的租约
+     */
+    public void invalidate() {
+        generation++;
+        leases.remove();
+    }
+
+
+    /**
+     * uidSource已经按等待策略与拒绝策略处理过空环，仍然取不到时抛出异常，不在这里空转重试
+     */
+    private void renew(Lease lease) {
+        int currentGeneration = generation;
+
+        int taken = uidSource.take(lease.uids, 0, leaseSize);
+        if (taken == 0) {
+            throw new YahhUIDException("Rejected take buffer, no uid to lease");
+        }
+
+        lease.position = 0;
+        lease.limit = taken;
+        lease.generation = currentGeneration;
+    }
+
+
+    public int getLeaseSize() {
+        return leaseSize;
+    }
+
+
+    /**
+     * 租约的来源，一次最多取出length个uid，返回实际取出的个数
+     */
+    @FunctionalInterface
+    public interface UidSource {
+
+        int take(long[] dest, int offset, int length);
+    }
+
+
+    private static class Lease {
+
+        private final long[] uids;
+        private int position;
+        private int limit;
+        private int generation;
+
+        private Lease(int leaseSize) {
+            this.uids = new long[leaseSize];
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.yahh.uid.clock;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author 邹磊
+ * @version 1.0
+ * @description: 手动控制的时钟，用于测试
+ * @date 2021/5/2 11:05
+ */
+public class ManualUidClock implements UidClock {
+
+    private final AtomicLong currentMillis;
+
+
+    public ManualUidClock() {
+        this(System.currentTimeMillis());
+    }
+
+
+    public ManualUidClock(long currentMillis) {
+        this.currentMillis = new AtomicLong(currentMillis);
+    }
+
+
+    @Override
+    public long currentSecond() {
+        return TimeUnit.MILLISECONDS.toSeconds(currentMillis.get());
+    }
+
+    @Override
+    public long currentMillis() {
+        return currentMillis.get();
+    }
+
+
+    public void setCurrentMillis(long currentMillis) {
+        this.currentMillis.set(currentMillis);
+    }
+
+    /**
+     * 时间前进（amount为负数时即为时钟回拨）
+     */
+    public void advance(long amount, TimeUnit unit) {
+        this.currentMillis.addAndGet(unit.toMillis(amount));
+    }
+}
@@ -0,0 +1,22 @@
+package com.yahh.uid.clock;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author 邹磊
+ * @version 1.0
+ * @description: 每次直接读取System.currentTimeMillis()的时钟
+ * @date 2021/5/2 10:20
+ */
+public class SystemUidClock implements UidClock {
+
+    @Override
+    public long currentSecond() {
+        return TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+    }
+
+    @Override
+    public long currentMillis() {
+        return System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,130 @@
+package com.yahh.uid.clock;
+
+import com.yahh.uid.utils.NamingThreadFactory;
+import com.yahh.uid.utils.PaddedAtomicLong;
+import org.springframework.util.Assert;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * @author 邹磊
+ * @version 1.0
+ * @description: 由后台线程定时发布当前时间的时钟
+ * @date 2021/5/2 10:31
+ *
+ * 后台守护线程每tickMillis毫秒读取一次系统时间，写入独占缓存行的字段，
+ * 读取方只需一次volatile读，不再在每次生成id时调用System.currentTimeMillis()并做单位换算。
+ * 读到的时间最多落后一个tick（加上线程调度延迟）。
+ *
+ * 共享实例按引用计数管理：使用方通过{@link #acquireShared()}获取，关闭时调用{@link #releaseShared(TickingUidClock)}，
+ * 最后一个使用方释放后停止后台线程，之后再获取时重新创建。
+ */
+public class TickingUidClock implements UidClock {
+
+    /**
+     * 线程名称
+     */
+    private static final String TICKER_NAME = "UidClock-Ticker";
+
+    /**
+     * 默认1毫秒发布一次
+     */
+    public static final long DEFAULT_TICK_MILLIS = 1L;
+
+    /**
+     * 共享实例及其引用计数，由类锁保护
+     */
+    private static TickingUidClock sharedClock;
+    private static int sharedReferences;
+
+    private final PaddedAtomicLong currentMillis;
+    private final PaddedAtomicLong currentSecond;
+
+    private final long tickNanos;
+    private final Thread ticker;
+    private volatile boolean running = true;
+
+
+    public TickingUidClock() {
+        this(DEFAULT_TICK_MILLIS);
+    }
+
+
+    public TickingUidClock(long tickMillis) {
+        Assert.isTrue(tickMillis > 0, "Tick millis must be positive");
+
+        long now = System.currentTimeMillis();
+        this.currentMillis = new PaddedAtomicLong(now);
+        this.currentSecond = new PaddedAtomicLong(TimeUnit.MILLISECONDS.toSeconds(now));
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+
+        this.ticker = new NamingThreadFactory(TICKER_NAME, true, null).newThread(this::tick);
+        this.ticker.start();
+    }
+
+
+    /**
+     * 获取所有未指定时钟的生成器共用的实例，引用计数加1，第一次获取时才启动后台线程
+     */
+    public static synchronized TickingUidClock acquireShared() {
+        if (sharedClock == null) {
+            sharedClock = new TickingUidClock();
+        }
+        sharedReferences++;
+        return sharedClock;
+    }
+
+
+    /**
+     * 释放通过{@link #acquireShared()}获取的共享实例，引用计数归零时停止后台线程
+     */
+    public static synchronized void releaseShared(TickingUidClock clock) {
+        if (clock == null || clock != sharedClock) {
+            return;
+        }
+        if (--sharedReferences == 0) {
+            sharedClock.shutdown();
+            sharedClock = null;
+        }
+    }
+
+
+    private void tick() {
+        while (running) {
+            long now = System.currentTimeMillis();
+            currentMillis.set(now);
+            currentSecond.set(TimeUnit.MILLISECONDS.toSeconds(now));
+
+            LockSupport.parkNanos(this, tickNanos);
+        }
+    }
+
+
+    @Override
+    public long currentSecond() {
+        return currentSecond.get();
+    }
+
+    @Override
+    public long currentMillis() {
+        return currentMillis.get();
+    }
+
+
+    /**
+     * 停止后台线程，停止之后时间不再更新
+     */
+    public void shutdown() {
+        running = false;
+        LockSupport.unpark(ticker);
+    }
+
+
+    /**
+     * 后台线程是否仍在发布时间
+     */
+    public boolean isRunning() {
+        return running;
+    }
+}
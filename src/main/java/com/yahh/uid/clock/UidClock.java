@@ -0,0 +1,35 @@
+package com.yahh.uid.clock;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author 邹磊
+ * @version 1.0
+ * @description: uid生成使用的时钟
+ * @date 2021/5/2 10:12
+ *
+ * 默认实现为{@link TickingUidClock}，由后台线程定时发布当前时间，生成id时只需读取一个volatile字段；
+ * 测试时可以使用{@link ManualUidClock}手动控制时间，模拟时钟回拨、序列号用完等场景。
+ */
+public interface UidClock {
+
+    /**
+     * 当前时间，单位秒
+     */
+    long currentSecond();
+
+    /**
+     * 当前时间，单位毫秒
+     */
+    long currentMillis();
+
+    /**
+     * 以unit为单位的当前时间
+     */
+    default long currentTime(TimeUnit unit) {
+        if (unit == TimeUnit.SECONDS) {
+            return currentSecond();
+        }
+        return unit.convert(currentMillis(), TimeUnit.MILLISECONDS);
+    }
+}
@@ -26,4 +26,8 @@ public class YahhUIDException extends RuntimeException {
     public YahhUIDException(Throwable cause) {
         super(cause);
     }
+
+    public YahhUIDException(String message, Throwable cause) {
+        super(message, cause);
+    }
 }
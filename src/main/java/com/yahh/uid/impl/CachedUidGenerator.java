@@ -1,18 +1,23 @@
 package com.yahh.uid.impl;
 
 import com.yahh.uid.buffer.BufferPaddingExecutor;
+import com.yahh.uid.buffer.BufferedUidRangeProvider;
 import com.yahh.uid.buffer.RejectedPutBufferHandler;
 import com.yahh.uid.buffer.RejectedTakeBufferHandler;
 import com.yahh.uid.buffer.RingBuffer;
+import com.yahh.uid.buffer.TakeWaitStrategy;
+import com.yahh.uid.buffer.ThreadLocalUidCache;
 import com.yahh.uid.exception.YahhUIDException;
+import com.yahh.uid.utils.VirtualThreads;
 import jdk.nashorn.internal.runtime.linker.LinkerCallSite;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.DisposableBean;
 import org.springframework.util.Assert;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author 邹磊
@@ -26,9 +31,24 @@ import java.util.List;
  * scheduleInterval：也是决定向RingBuffer中填充UID的时机，单位秒。对应周期填充机制。
  * rejectedPutBufferHandler：拒绝策略: 当环已满, 无法继续填充时，需要实现RejectedPutBufferHandler接口
  * rejectedTakeBufferHandler：拒绝策略: 当环已空, 无法继续获取时，需要实现RejectedTakeBufferHandler接口
+ * leaseSize：每个线程一次从RingBuffer中租用的uid个数，默认0即不启用线程本地租用
+ * shardCount：RingBuffer分片数，必须是2的幂，默认1。每个分片各自拥有 1/shardCount 的序列号空间与填充线程，
+ *             调用方按线程分配到不同分片，分片取空时从其它分片获取，避免所有线程竞争同一个cursor
+ * takeWaitStrategy：环已空时的等待策略，默认REJECT即直接拒绝，其它策略会在takeTimeout内等待填充
+ * takeTimeout：使用等待策略时getUID()的最长等待时间，单位毫秒，默认1000
+ * adaptiveSizing：是否按获取速率自动扩缩容，默认false。开启后环从 (maxSequence + 1) << minBoostPower 开始，
+ *                 在填充时按获取速率在 minBoostPower ~ boostPower 之间扩缩容，新环发布前旧环继续提供uid
+ * minBoostPower：自适应模式下环大小的下限，默认0
+ * paddingHeadroom：预测填充，单位毫秒，默认不启用。按获取速率的EWMA预计环在paddingHeadroom内取空时提前填充，
+ *                  而不是等到低于paddingFactor才填充
+ * maxPaddingBorrowSeconds：填充时最多借用未来多少秒，默认不限制。达到上限后填充暂停，等时钟前进再继续，
+ *                          保证uid中的时间最多领先当前时间这么多秒，当前领先量见getDriftMillis()。
+ *                          WorkerIdAssigner限制了借用上限时默认取该上限，配置超过上限则初始化失败
+ * workerId失效（如租约过期、被其它节点接管）后getUID()和fill()不再发出环中或线程本地已缓存的uid
+ * virtualThreads：填充线程是否使用虚拟线程，默认false。每个分片只有一个填充线程，运行时不支持虚拟线程时仍使用普通线程
  *
  */
-public class CachedUidGenerator extends DefaultUidGenerator implements DisposableBean {
+public class CachedUidGenerator extends DefaultUidGenerator {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(CachedUidGenerator.class);
 
@@ -36,16 +56,31 @@ public class CachedUidGenerator extends DefaultUidGenerator implements Disposabl
      * 计算bufferSize使用
      */
     private static final int DEFAULT_BOOST_POWER = 3;
+    private static final int DEFAULT_SHARD_COUNT = 1;
 
     private int boostPower = DEFAULT_BOOST_POWER;
     private int paddingFactor = RingBuffer.DEFAULT_PADDING_PERCENT;
     private Long scheduleInterval;
+    private int leaseSize;
+    private int shardCount = DEFAULT_SHARD_COUNT;
+    private TakeWaitStrategy takeWaitStrategy = TakeWaitStrategy.REJECT;
+    private long takeTimeout = RingBuffer.DEFAULT_TAKE_TIMEOUT_MILLIS;
+    private boolean adaptiveSizing;
+    private int minBoostPower;
+    private long paddingHeadroom;
+    private boolean virtualThreads;
+    private Long maxPaddingBorrowSeconds;
 
     private RejectedTakeBufferHandler rejectedTakeBufferHandler;
     private RejectedPutBufferHandler rejectedPutBufferHandler;
 
-    private RingBuffer ringBuffer;
-    private BufferPaddingExecutor bufferPaddingExecutor;
+    /**
+     * 自适应模式下扩缩容时整体替换，保证调用方读到的总是完整的数组
+     */
+    private volatile RingBuffer[] ringBuffers;
+    private BufferPaddingExecutor[] bufferPaddingExecutors;
+    private int shardMask;
+    private ThreadLocalUidCache threadLocalUidCache;
 
 
     @Override
@@ -60,60 +95,247 @@ public class CachedUidGenerator extends DefaultUidGenerator implements Disposabl
     @Override
     public long getUID() throws YahhUIDException {
         try {
-            return ringBuffer.take();
+            this.checkWorkerId();
+            if (threadLocalUidCache != null) {
+                return threadLocalUidCache.take();
+            }
+            if (shardMask == 0) {
+                return ringBuffers[0].take();
+            }
+            return takeFromShards();
+        } catch (Exception e) {
+            LOGGER.error("Generate unique id exception: ", e);
+            throw new YahhUIDException(e);
+        }
+    }
+
+    /**
+     * 环已空时最多等待timeout，等待填充线程发布新的uid，超时后按拒绝策略处理
+     * 该方法不经过线程本地租用
+     */
+    public long getUID(long timeout, TimeUnit unit) throws YahhUIDException {
+        try {
+            this.checkWorkerId();
+            if (shardMask == 0) {
+                return ringBuffers[0].take(timeout, unit);
+            }
+
+            int shard = shardIndex();
+            for (int i = 0; i <= shardMask; i++) {
+                long uid = ringBuffers[(shard + i) & shardMask].poll();
+                if (uid != RingBuffer.EMPTY_UID) {
+                    return uid;
+                }
+            }
+            return ringBuffers[shard].take(timeout, unit);
         } catch (Exception e) {
             LOGGER.error("Generate unique id exception: ", e);
             throw new YahhUIDException(e);
         }
     }
 
+    /**
+     * 拒绝策略没有抛出异常且环仍为空时抛出异常，不在这里空转等待
+     */
+    @Override
+    public void fill(long[] dest) throws YahhUIDException {
+        try {
+            this.checkWorkerId();
+            int filled = 0;
+            while (filled < dest.length) {
+                int taken = takeFromShards(dest, filled, dest.length - filled);
+                if (taken == 0) {
+                    throw new YahhUIDException("Rejected take buffer, filled %d of %d", filled, dest.length);
+                }
+                filled += taken;
+            }
+        } catch (Exception e) {
+            LOGGER.error("Generate unique ids exception: ", e);
+            throw new YahhUIDException(e);
+        }
+    }
+
     @Override
     public String pareUID(long uid) {
         return super.pareUID(uid);
     }
 
 
+    /**
+     * 未配置maxPaddingBorrowSeconds时取WorkerIdAssigner的上限
+     */
+    @Override
+    protected void checkBorrowLimit(Long limit) {
+        if (limit == null) {
+            return;
+        }
+        if (maxPaddingBorrowSeconds == null) {
+            LOGGER.info("Limit padding borrow seconds to {} for {}", limit, workerIdAssigner.getClass().getSimpleName());
+            maxPaddingBorrowSeconds = limit;
+        } else if (maxPaddingBorrowSeconds > limit) {
+            throw new YahhUIDException("Max padding borrow seconds %d exceeds %d allowed by the worker id assigner",
+                    maxPaddingBorrowSeconds, limit);
+        }
+    }
+
+
+    /**
+     * 从当前线程对应的分片获取，该分片为空时依次尝试其它分片，全部为空时按拒绝策略处理
+     */
+    private long takeFromShards() {
+        int shard = shardIndex();
+        for (int i = 0; i <= shardMask; i++) {
+            long uid = ringBuffers[(shard + i) & shardMask].poll();
+            if (uid != RingBuffer.EMPTY_UID) {
+                return uid;
+            }
+        }
+        return ringBuffers[shard].take();
+    }
+
+    private int takeFromShards(long[] dest, int offset, int length) {
+        int shard = shardIndex();
+        for (int i = 0; i <= shardMask; i++) {
+            int taken = ringBuffers[(shard + i) & shardMask].poll(dest, offset, length);
+            if (taken > 0) {
+                return taken;
+            }
+        }
+        return ringBuffers[shard].take(dest, offset, length);
+    }
+
+    private int shardIndex() {
+        return (int) ((Thread.currentThread().getId() * 0x9E3779B97F4A7C15L) >>> 32) & shardMask;
+    }
+
+
     /**
      * 初始化
      */
     private void initRingbuffer() {
-        // 初始化bufferSize
-        int bufferSize = ((int) bitsAllocator.getMaxSequence() + 1) << boostPower;
-        this.ringBuffer = new RingBuffer(bufferSize,paddingFactor);
-        LOGGER.info("Initialized ring buffer size:{}, paddingFactor:{}", bufferSize, paddingFactor);
-
-        // 初始化bufferpaddingExecutor
+        int sequenceSize = (int) bitsAllocator.getMaxSequence() + 1;
+        Assert.isTrue(shardCount <= sequenceSize, "Shard count can't exceed the sequence size " + sequenceSize);
+        Assert.isTrue(!adaptiveSizing || minBoostPower <= boostPower, "Min boost power can't exceed boost power");
+
+        // 初始化bufferSize，所有分片的总大小与不分片时一致，自适应模式下从下限开始
+        int maxBufferSize = (sequenceSize << boostPower) / shardCount;
+        int minBufferSize = (sequenceSize << minBoostPower) / shardCount;
+        int bufferSize = adaptiveSizing ? minBufferSize : maxBufferSize;
+        int shardSequenceSize = sequenceSize / shardCount;
         boolean usingSchedule = (scheduleInterval != null);
-        this.bufferPaddingExecutor = new BufferPaddingExecutor(ringBuffer,this::nextIdsForOneSecond, usingSchedule);
-        if (usingSchedule) {
-            bufferPaddingExecutor.setScheduleInterval(scheduleInterval);
+
+        ThreadFactory padderThreadFactory = null;
+        if (virtualThreads) {
+            padderThreadFactory = VirtualThreads.factory(BufferPaddingExecutor.WORKER_NAME);
+            if (padderThreadFactory == null) {
+                LOGGER.warn("Virtual threads are not supported by current JVM, padding with platform threads");
+            }
+        }
+
+        this.shardMask = shardCount - 1;
+        RingBuffer[] ringBuffers = new RingBuffer[shardCount];
+        this.bufferPaddingExecutors = new BufferPaddingExecutor[shardCount];
+        for (int shard = 0; shard < shardCount; shard++) {
+            RingBuffer ringBuffer = new RingBuffer(bufferSize, paddingFactor);
+
+            // 初始化bufferpaddingExecutor，每个分片只填充自己的那一段序列号
+            long firstSequence = (long) shard * shardSequenceSize;
+            BufferPaddingExecutor bufferPaddingExecutor = new BufferPaddingExecutor(ringBuffer,
+                    (momentInSecond, consumer) -> nextIdRangeForOneSecond(momentInSecond, firstSequence, shardSequenceSize, consumer),
+                    usingSchedule, clock, timestampUnit);
+            if (usingSchedule) {
+                bufferPaddingExecutor.setScheduleInterval(scheduleInterval);
+            }
+            bufferPaddingExecutor.setPaddingHeadroom(paddingHeadroom);
+            if (maxPaddingBorrowSeconds != null) {
+                bufferPaddingExecutor.setMaxBorrowSeconds(maxPaddingBorrowSeconds);
+            }
+            if (padderThreadFactory != null) {
+                bufferPaddingExecutor.setPadderThreadFactory(padderThreadFactory);
+            }
+            if (adaptiveSizing) {
+                int resizedShard = shard;
+                bufferPaddingExecutor.setAdaptiveSizing(minBufferSize, maxBufferSize,
+                        resized -> replaceRingBuffer(resizedShard, resized));
+            }
+
+            ringBuffer.setBufferPaddingExecutor(bufferPaddingExecutor);
+            ringBuffer.setTakeWaitStrategy(takeWaitStrategy);
+            ringBuffer.setTakeTimeout(takeTimeout, TimeUnit.MILLISECONDS);
+            if (rejectedPutBufferHandler != null) {
+                ringBuffer.setRejectedPutHandler(rejectedPutBufferHandler);
+            }
+            if (rejectedTakeBufferHandler != null) {
+                ringBuffer.setRejectedTakeHandler(rejectedTakeBufferHandler);
+            }
+
+            ringBuffers[shard] = ringBuffer;
+            this.bufferPaddingExecutors[shard] = bufferPaddingExecutor;
         }
+        this.ringBuffers = ringBuffers;
+        LOGGER.info("Initialized ring buffer size:{}, paddingFactor:{}, shardCount:{}, takeWaitStrategy:{}, adaptiveSizing:{}",
+                bufferSize, paddingFactor, shardCount, takeWaitStrategy, adaptiveSizing);
         LOGGER.info("Initialized BufferPaddingExecutor. Using schdule:{}, interval:{}", usingSchedule, scheduleInterval);
 
-        this.ringBuffer.setBufferPaddingExecutor(bufferPaddingExecutor);
-        if (rejectedPutBufferHandler != null) {
-            this.ringBuffer.setRejectedPutHandler(rejectedPutBufferHandler);
+        // 线程本地租用
+        if (leaseSize > 0) {
+            this.threadLocalUidCache = new ThreadLocalUidCache(leaseSize, this::takeFromShards);
+            LOGGER.info("Initialized ThreadLocalUidCache. leaseSize:{}", leaseSize);
         }
-        if (rejectedTakeBufferHandler != null) {
-            this.ringBuffer.setRejectedTakeHandler(rejectedTakeBufferHandler);
+
+        for (BufferPaddingExecutor bufferPaddingExecutor : bufferPaddingExecutors) {
+            // 填充
+            bufferPaddingExecutor.paddingBuffer();
+
+            // 开启填充线程
+            bufferPaddingExecutor.start();
         }
 
-        // 填充
-        bufferPaddingExecutor.paddingBuffer();
+    }
+
+
+    /**
+     * 自适应模式下由填充线程回调，用新环替换shard对应的环
+     */
+    private synchronized void replaceRingBuffer(int shard, RingBuffer ringBuffer) {
+        RingBuffer[] replaced = this.ringBuffers.clone();
+        replaced[shard] = ringBuffer;
+        this.ringBuffers = replaced;
+    }
+
+
+    /**
+     * 当前秒内的id为 firstSeqUid ~ firstSeqUid + maxSequence，整体作为一个区间提供，不产生装箱对象
+     * 毫秒模式下currentSecond为毫秒
+     */
+    protected boolean nextIdRangeForOneSecond(long currentSecond, BufferedUidRangeProvider.RangeConsumer consumer) {
+        return nextIdRangeForOneSecond(currentSecond, 0L, (int) bitsAllocator.getMaxSequence() + 1, consumer);
+    }
 
-        // 开启填充线程
-        bufferPaddingExecutor.start();
 
+    /**
+     * 提供当前秒内序列号 firstSequence ~ firstSequence + count - 1 对应的id
+     */
+    protected boolean nextIdRangeForOneSecond(long currentSecond, long firstSequence, int count,
+                                              BufferedUidRangeProvider.RangeConsumer consumer) {
+        // 租约失效后停止填充，环中已有的uid取完后拒绝获取
+        this.checkWorkerId();
+        long firstSeqUid = bitsAllocator.allocte(currentSecond - epochTimestamp, workerId, firstSequence);
+        return consumer.accept(firstSeqUid, count);
     }
 
 
+    /**
+     * @deprecated 已由{@link #nextIdRangeForOneSecond}代替，仅为兼容保留
+     */
+    @Deprecated
     protected List<Long> nextIdsForOneSecond(long currentSecond) {
         // 初始化结果集大小
         int listSize = (int) bitsAllocator.getMaxSequence() + 1;
         List<Long> uidList = new ArrayList<>(listSize);
 
         //获取到当前时间的第一个id,然后依次累加
-        long firstSeqUid = bitsAllocator.allocte(currentSecond-epochSeconds,workerId,0L);
+        long firstSeqUid = bitsAllocator.allocte(currentSecond-epochTimestamp,workerId,0L);
         for (int offset = 0; offset < listSize; offset++) {
             uidList.add(firstSeqUid + offset);
         }
@@ -124,7 +346,26 @@ public class CachedUidGenerator extends DefaultUidGenerator implements Disposabl
 
     @Override
     public void destroy() throws Exception {
-        bufferPaddingExecutor.shutdown();
+        if (threadLocalUidCache != null) {
+            threadLocalUidCache.invalidate();
+        }
+        for (BufferPaddingExecutor bufferPaddingExecutor : bufferPaddingExecutors) {
+            bufferPaddingExecutor.shutdown();
+        }
+        super.destroy();
+    }
+
+
+    /**
+     * 缓存模式下以各分片填充到的时间为准，包含借用的未来时间
+     */
+    @Override
+    protected long getReusableMillis() {
+        long lastSecond = Long.MIN_VALUE;
+        for (BufferPaddingExecutor bufferPaddingExecutor : bufferPaddingExecutors) {
+            lastSecond = Math.max(lastSecond, bufferPaddingExecutor.getLastSecond());
+        }
+        return timestampUnit.toMillis(lastSecond + 1);
     }
 
 
@@ -148,9 +389,250 @@ public class CachedUidGenerator extends DefaultUidGenerator implements Disposabl
         this.scheduleInterval = scheduleInterval;
     }
 
+    public void setLeaseSize(int leaseSize) {
+        Assert.isTrue(leaseSize >= 0, "Lease size can't be negative!");
+        this.leaseSize = leaseSize;
+    }
+
+    public void setShardCount(int shardCount) {
+        Assert.isTrue(shardCount > 0 && Integer.bitCount(shardCount) == 1, "Shard count must be a power of 2!");
+        this.shardCount = shardCount;
+    }
+
+    public void setTakeWaitStrategy(TakeWaitStrategy takeWaitStrategy) {
+        Assert.notNull(takeWaitStrategy, "TakeWaitStrategy can't be null!");
+        this.takeWaitStrategy = takeWaitStrategy;
+    }
+
+    public void setTakeTimeout(long takeTimeout) {
+        Assert.isTrue(takeTimeout > 0, "Take timeout must be positive!");
+        this.takeTimeout = takeTimeout;
+    }
+
+    public void setAdaptiveSizing(boolean adaptiveSizing) {
+        this.adaptiveSizing = adaptiveSizing;
+    }
+
+    public void setMinBoostPower(int minBoostPower) {
+        Assert.isTrue(minBoostPower >= 0, "Min boost power can't be negative!");
+        this.minBoostPower = minBoostPower;
+    }
+
+    /**
+     * 初始化之后修改会同步到各分片的填充线程，null表示不限制
+     */
+    public void setMaxPaddingBorrowSeconds(Long maxPaddingBorrowSeconds) {
+        Assert.isTrue(maxPaddingBorrowSeconds == null || maxPaddingBorrowSeconds >= 0,
+                "Max padding borrow seconds can't be negative!");
+        this.maxPaddingBorrowSeconds = maxPaddingBorrowSeconds;
+        if (bufferPaddingExecutors != null) {
+            for (BufferPaddingExecutor bufferPaddingExecutor : bufferPaddingExecutors) {
+                bufferPaddingExecutor.setMaxBorrowSeconds(maxPaddingBorrowSeconds == null ? -1L : maxPaddingBorrowSeconds);
+            }
+        }
+    }
+
+    public Long getMaxPaddingBorrowSeconds() {
+        return maxPaddingBorrowSeconds;
+    }
+
+    /**
+     * 已填充的uid中的时间最多领先当前时间多少毫秒
+     */
+    public long getDriftMillis() {
+        long drift = Long.MIN_VALUE;
+        for (BufferPaddingExecutor bufferPaddingExecutor : bufferPaddingExecutors) {
+            drift = Math.max(drift, bufferPaddingExecutor.getDrift(TimeUnit.MILLISECONDS));
+        }
+        return drift;
+    }
+
+    /**
+     * 因借用达到上限而暂停填充的次数
+     */
+    public long getThrottledPaddingCount() {
+        long count = 0;
+        for (BufferPaddingExecutor bufferPaddingExecutor : bufferPaddingExecutors) {
+            count += bufferPaddingExecutor.getThrottledCount();
+        }
+        return count;
+    }
+
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * 初始化之后修改会同步到各分片的填充线程，0表示停止预测填充
+     */
+    public void setPaddingHeadroom(long paddingHeadroom) {
+        Assert.isTrue(paddingHeadroom >= 0, "Padding headroom can't be negative!");
+        this.paddingHeadroom = paddingHeadroom;
+        if (bufferPaddingExecutors != null) {
+            for (BufferPaddingExecutor bufferPaddingExecutor : bufferPaddingExecutors) {
+                bufferPaddingExecutor.setPaddingHeadroom(paddingHeadroom);
+            }
+        }
+    }
+
+    /**
+     * 各分片获取速率之和，单位:个/秒，只在开启预测填充时更新
+     */
+    public double getTakeRate() {
+        double takeRate = 0;
+        for (RingBuffer ringBuffer : ringBuffers) {
+            takeRate += ringBuffer.getTakeRate();
+        }
+        return takeRate;
+    }
+
+    /**
+     * 各分片中最早取空的预计时间，单位:毫秒
+     */
+    public long getMillisToEmpty() {
+        long millisToEmpty = Long.MAX_VALUE;
+        for (RingBuffer ringBuffer : ringBuffers) {
+            millisToEmpty = Math.min(millisToEmpty, ringBuffer.getMillisToEmpty());
+        }
+        return millisToEmpty;
+    }
+
+    /**
+     * 各分片中可消费的uid个数之和
+     */
+    public long getAvailable() {
+        long available = 0;
+        for (RingBuffer ringBuffer : ringBuffers) {
+            available += ringBuffer.getAvailable();
+        }
+        return available;
+    }
+
+    /**
+     * 各分片累计取出的uid个数
+     */
+    public long getTakenCount() {
+        long count = 0;
+        for (RingBuffer ringBuffer : ringBuffers) {
+            count += ringBuffer.getTakenCount();
+        }
+        return count;
+    }
+
+    public long getLowWaterCount() {
+        long count = 0;
+        for (RingBuffer ringBuffer : ringBuffers) {
+            count += ringBuffer.getLowWaterCount();
+        }
+        return count;
+    }
+
+    public long getRejectedPutCount() {
+        long count = 0;
+        for (RingBuffer ringBuffer : ringBuffers) {
+            count += ringBuffer.getRejectedPutCount();
+        }
+        return count;
+    }
+
+    public long getRejectedTakeCount() {
+        long count = 0;
+        for (RingBuffer ringBuffer : ringBuffers) {
+            count += ringBuffer.getRejectedTakeCount();
+        }
+        return count;
+    }
+
+    public long getPaddingCount() {
+        long count = 0;
+        for (BufferPaddingExecutor bufferPaddingExecutor : bufferPaddingExecutors) {
+            count += bufferPaddingExecutor.getPaddingCount();
+        }
+        return count;
+    }
+
+    /**
+     * 填充累计耗时，单位纳秒
+     */
+    public long getPaddingNanos() {
+        long nanos = 0;
+        for (BufferPaddingExecutor bufferPaddingExecutor : bufferPaddingExecutors) {
+            nanos += bufferPaddingExecutor.getPaddingNanos();
+        }
+        return nanos;
+    }
+
+    public long getResizeCount() {
+        long count = 0;
+        for (BufferPaddingExecutor bufferPaddingExecutor : bufferPaddingExecutors) {
+            count += bufferPaddingExecutor.getResizeCount();
+        }
+        return count;
+    }
+
+    public long getPaddingHeadroom() {
+        return paddingHeadroom;
+    }
+
+    /**
+     * 预测填充触发的次数
+     */
+    public long getPredictivePaddingCount() {
+        long count = 0;
+        for (BufferPaddingExecutor bufferPaddingExecutor : bufferPaddingExecutors) {
+            count += bufferPaddingExecutor.getPredictivePaddingCount();
+        }
+        return count;
+    }
+
+    /**
+     * 各分片当前的环大小之和，自适应模式下随获取速率变化
+     */
+    public int getBufferSize() {
+        int bufferSize = 0;
+        for (RingBuffer ringBuffer : ringBuffers) {
+            bufferSize += ringBuffer.getBufferSize();
+        }
+        return bufferSize;
+    }
+
+    /**
+     * 初始化之后修改会同步到各分片当前的环，扩缩容后的新环沿用旧环的值
+     */
     public void setPaddingFactor(int paddingFactor) {
         Assert.isTrue(paddingFactor > 0 && paddingFactor < 100, "padding factor must be in (0, 100)!");
         this.paddingFactor = paddingFactor;
+        RingBuffer[] current = this.ringBuffers;
+        if (current != null) {
+            for (RingBuffer ringBuffer : current) {
+                ringBuffer.setPaddingFactor(paddingFactor);
+            }
+        }
+    }
+
+    public int getPaddingFactor() {
+        return paddingFactor;
+    }
+
+    /**
+     * 各分片环的当前状态
+     */
+    public String[] getRingBufferStates() {
+        RingBuffer[] current = this.ringBuffers;
+        String[] states = new String[current.length];
+        for (int shard = 0; shard < current.length; shard++) {
+            states[shard] = current[shard].toString();
+        }
+        return states;
+    }
+
+    /**
+     * 立即唤醒各分片的填充线程填充，不等待填充完成
+     */
+    public void refill() {
+        for (BufferPaddingExecutor bufferPaddingExecutor : bufferPaddingExecutors) {
+            bufferPaddingExecutor.asyncPadding();
+        }
     }
 
 }
@@ -2,17 +2,26 @@ package com.yahh.uid.impl;
 
 import com.yahh.uid.UidGenerator;
 import com.yahh.uid.buffer.RingBuffer;
+import com.yahh.uid.clock.TickingUidClock;
+import com.yahh.uid.clock.UidClock;
 import com.yahh.uid.exception.YahhUIDException;
 import com.yahh.uid.utils.DateUtils;
 import com.yahh.uid.BitsAllocator;
+import com.yahh.uid.utils.PaddedAtomicLong;
 import com.yahh.uid.worker.WorkerIdAssigner;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.util.Assert;
 
 import java.util.Date;
+import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * @author 邹磊
@@ -20,25 +29,92 @@ import java.util.concurrent.TimeUnit;
  * @description:
  * @date 2021/3/14 18:57
  */
-public class DefaultUidGenerator implements UidGenerator, InitializingBean {
+public class DefaultUidGenerator implements UidGenerator, InitializingBean, DisposableBean {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaultUidGenerator.class);
 
+    private static final long START_STATE = -1L;
+
+    /**
+     * 等待下一个时间单位时每次最少park的时间
+     */
+    private static final long MIN_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
     protected int timeBits = 28;
     protected int workerIdBits = 22;
     protected int seqBits = 13;
 
+    /**
+     * 时间基点，格式为yyyy-MM-dd，按东八区的零点解析，与服务器时区无关
+     * 默认2021-03-01，28位秒级时间可以用到2029-09，38位毫秒级时间可以用到2029-11
+     */
     protected String epochStr = "2021-03-01";
     protected Long epochSeconds = TimeUnit.MILLISECONDS.toSeconds(1614528000000L);
 
+    private static final TimeZone EPOCH_TIME_ZONE = TimeZone.getTimeZone("GMT+08:00");
+
+    /**
+     * 时间戳单位，SECONDS或MILLISECONDS
+     * 毫秒模式下每毫秒拥有独立的序列号空间，需要配合更多的时间位，见{@link BitsAllocator}
+     */
+    protected TimeUnit timestampUnit = TimeUnit.SECONDS;
+
+    /**
+     * 以timestampUnit为单位的epochSeconds
+     */
+    protected long epochTimestamp = epochSeconds;
+
     protected BitsAllocator bitsAllocator;
     protected Long workerId;
 
-    protected long sequence = 0L;
-    protected long lastSecond = -1L;
+    /**
+     * 高位为lastSecond（相对epochSeconds的秒数，毫秒模式下为毫秒数），低seqBits位为sequence
+     * 初始值-1表示还未生成过id
+     */
+    protected final AtomicLong state = new PaddedAtomicLong(START_STATE);
+
+    /**
+     * 当前秒的序列号用完时，最多可以借用未来多少秒，默认0即不借用，park到下一秒
+     */
+    protected long maxBorrowSeconds = 0L;
+
+    /**
+     * 因序列号用完而等待下一秒的次数
+     */
+    protected final LongAdder exhaustedWaitCount = new LongAdder();
+
+    /**
+     * 是否容忍时钟回拨，容忍时继续使用lastSecond剩余的序列号，用完后等待时钟追上
+     */
+    protected boolean enableBackward = true;
+
+    /**
+     * 时钟回拨最长容忍时间（秒），超过则拒绝生成
+     */
+    protected long maxBackwardSeconds = 1L;
+
+    /**
+     * 被容忍的时钟回拨次数
+     */
+    protected final LongAdder backwardCount = new LongAdder();
+
+    /**
+     * 最近一次发现时钟回拨时的lastSecond，用于同一次回拨只计数一次
+     */
+    private final AtomicLong lastBackwardDelta = new AtomicLong(START_STATE);
 
     protected WorkerIdAssigner workerIdAssigner;
 
+    /**
+     * 时钟，未指定时使用共享的{@link TickingUidClock}
+     */
+    protected UidClock clock;
+
+    /**
+     * 使用的是共享的{@link TickingUidClock}，destroy时释放引用
+     */
+    private TickingUidClock sharedClock;
+
     @Override
     public long getUID() throws YahhUIDException {
 
@@ -50,6 +126,16 @@ public class DefaultUidGenerator implements UidGenerator, InitializingBean {
         }
     }
 
+    @Override
+    public void fill(long[] dest) throws YahhUIDException {
+        try {
+            this.nextIds(dest, 0, dest.length);
+        } catch (Exception e){
+            LOGGER.error("Generate unique ids exception. ", e);
+            throw new YahhUIDException(e);
+        }
+    }
+
     @Override
     public String pareUID(long uid) {
         long totalBits = BitsAllocator.TOTAL_BITS;
@@ -61,10 +147,12 @@ public class DefaultUidGenerator implements UidGenerator, InitializingBean {
         // parse UID
         long sequence = (uid << (totalBits - sequenceBits)) >>> (totalBits - sequenceBits);
         long workerId = (uid << (timestampBits + signBits)) >>> (totalBits - workerIdBits);
-        long deltaSeconds = uid >>> (workerIdBits + sequenceBits);
+        long deltaTimestamp = uid >>> (workerIdBits + sequenceBits);
 
-        Date thatTime = new Date(TimeUnit.SECONDS.toMillis(epochSeconds + deltaSeconds));
-        String thatTimeStr = DateUtils.formatByDateTimePattern(thatTime);
+        Date thatTime = new Date(timestampUnit.toMillis(epochTimestamp + deltaTimestamp));
+        String thatTimeStr = timestampUnit == TimeUnit.MILLISECONDS
+                ? DateUtils.formatDate(thatTime, DateUtils.DATETIME_MS_PATTERN)
+                : DateUtils.formatByDateTimePattern(thatTime);
 
         // format as string
         return String.format("{\"UID\":\"%d\",\"timestamp\":\"%s\",\"workerId\":\"%d\",\"sequence\":\"%d\"}",
@@ -72,53 +160,163 @@ public class DefaultUidGenerator implements UidGenerator, InitializingBean {
     }
 
 
-    private synchronized long nextId(){
-        long currentSecond = this.getCurrentSecond();
+    /**
+     * 无锁生成id
+     * state中同时记录了lastSecond与sequence，通过CAS整体推进，避免所有调用方在同一个监视器上排队
+     */
+    private long nextId(){
+        final long maxSequence = bitsAllocator.getMaxSequence();
 
+        for (;;) {
+            long currentState = state.get();
+            long nextState = this.nextState(currentState);
 
-        if (currentSecond < lastSecond) {
-            long refusedSeconds = lastSecond - currentSecond;
-            throw new YahhUIDException("Clock moved backwards. Refusing for %d seconds", refusedSeconds);
+            if (state.compareAndSet(currentState, nextState)) {
+                return bitsAllocator.allocte(nextState >> seqBits, workerId, nextState & maxSequence);
+            }
         }
+    }
 
-        if (currentSecond == lastSecond){
-            /**
-             * 处于同一秒内，则+1
-             */
-            sequence = (sequence + 1) & bitsAllocator.getMaxSequence();
 
-            if (sequence == 0){
+    /**
+     * 批量生成id
+     * 每次CAS预占当前秒内尽可能多的连续序列号，而不是逐个推进
+     */
+    private void nextIds(long[] dest, int offset, int length) {
+        final long maxSequence = bitsAllocator.getMaxSequence();
+
+        int filled = 0;
+        while (filled < length) {
+            long currentState = state.get();
+            long firstState = this.nextState(currentState);
+
+            int count = (int) Math.min(maxSequence - (firstState & maxSequence) + 1, length - filled);
+            if (state.compareAndSet(currentState, firstState + count - 1)) {
+                long firstUid = bitsAllocator.allocte(firstState >> seqBits, workerId, firstState & maxSequence);
+                for (int i = 0; i < count; i++) {
+                    dest[offset + filled + i] = firstUid + i;
+                }
+                filled += count;
+            }
+        }
+    }
+
+
+    /**
+     * 计算currentState之后的下一个状态，即下一个可用的时间戳与序列号
+     */
+    private long nextState(long currentState) {
+        final long maxSequence = bitsAllocator.getMaxSequence();
+
+        long lastDelta = currentState >> seqBits;
+        long currentDelta = this.getCurrentTimestamp() - epochTimestamp;
+
+        if (currentDelta < lastDelta) {
+            long refused = lastDelta - currentDelta;
+            long maxBorrow = timestampUnit.convert(maxBorrowSeconds, TimeUnit.SECONDS);
+            if (refused > maxBorrow) {
                 /**
-                 * 说明当前秒内8192个id已经用完，需要等待到下一秒重新生成id
+                 * 超出借用范围，说明时钟发生了回拨
                  */
-                currentSecond = this.getNextSecond(lastSecond);
+                if (!enableBackward || refused - maxBorrow > timestampUnit.convert(maxBackwardSeconds, TimeUnit.SECONDS)) {
+                    throw new YahhUIDException("Clock moved backwards. Refusing for %d %s", refused, timestampUnit);
+                }
+                this.onClockBackward(lastDelta, refused);
+            }
+
+            /**
+             * 之前借用了未来的时间或者时钟小幅回拨，继续使用lastSecond剩余的序列号，
+             * 用完后在下面park到时钟追上lastSecond的下一个时间单位
+             */
+            currentDelta = lastDelta;
+        }
+
+        if (currentDelta == lastDelta) {
+            /**
+             * 处于同一秒（毫秒）内，则+1
+             */
+            if ((currentState & maxSequence) != maxSequence) {
+                return currentState + 1;
             }
 
-        } else {
             /**
-             * 不处于同一秒内，则从0开始
+             * 说明当前秒（毫秒）内的序列号已经用完
+             * 未超过借用上限时直接借用下一个时间单位，
+             * 否则park到时钟到达nextDelta - maxBorrow，此时nextDelta重新回到借用范围内，不需要等时钟追上lastDelta
              */
-            sequence = 0L;
+            long nextDelta = lastDelta + 1;
+            long maxBorrow = timestampUnit.convert(maxBorrowSeconds, TimeUnit.SECONDS);
+            if (nextDelta - (this.getCurrentTimestamp() - epochTimestamp) <= maxBorrow) {
+                this.checkWorkerId();
+                return nextDelta << seqBits;
+            }
+            long timestamp = this.getNextTimestamp(nextDelta - maxBorrow - 1 + epochTimestamp);
+            currentDelta = Math.max(nextDelta, timestamp - epochTimestamp);
+        }
+
+        /**
+         * 不处于同一秒（毫秒）内，则从0开始
+         */
+        this.checkWorkerId();
+        return currentDelta << seqBits;
+    }
+
+
+    /**
+     * workerId的租约失效后拒绝生成，只在进入新的时间单位时检查，同一秒（毫秒）内的序列号不再检查
+     */
+    protected void checkWorkerId() {
+        if (!workerIdAssigner.isWorkerIdValid()) {
+            throw new YahhUIDException("Worker id %d is no longer owned by this node. Refusing UID generate", workerId);
         }
+    }
+
+
+    /**
+     * 借用未来的时间不能超过WorkerIdAssigner允许的上限，否则workerId交给其它节点后借用的时间会重复
+     * @param limit WorkerIdAssigner允许的上限，null表示不限制
+     */
+    protected void checkBorrowLimit(Long limit) {
+        if (limit != null && maxBorrowSeconds > limit) {
+            throw new YahhUIDException("Max borrow seconds %d exceeds %d allowed by the worker id assigner", maxBorrowSeconds, limit);
+        }
+    }
 
-        lastSecond = currentSecond;
-        return bitsAllocator.allocte(currentSecond - epochSeconds,workerId,sequence);
+
+    /**
+     * 记录被容忍的时钟回拨，同一个lastSecond上的回拨只记录一次
+     */
+    private void onClockBackward(long lastDelta, long refused) {
+        long lastBackward = lastBackwardDelta.get();
+        if (lastBackward != lastDelta && lastBackwardDelta.compareAndSet(lastBackward, lastDelta)) {
+            backwardCount.increment();
+            LOGGER.warn("Clock moved backwards {} {}, continue with last timestamp {}",
+                    refused, timestampUnit, lastDelta + epochTimestamp);
+        }
     }
 
 
-    private long getCurrentSecond(){
-        long currentSecond = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+    private long getCurrentTimestamp(){
+        long currentTimestamp = clock.currentTime(timestampUnit);
 
-        if (currentSecond - epochSeconds > bitsAllocator.getMaxDeltaSeconds()) {
-            throw new YahhUIDException("Timestamp bits is exhausted. Refusing UID generate. Now: " + currentSecond);
+        if (currentTimestamp - epochTimestamp > bitsAllocator.getMaxDeltaSeconds()) {
+            throw new YahhUIDException("Timestamp bits is exhausted. Refusing UID generate. Now: " + currentTimestamp);
         }
-        return currentSecond;
+        return currentTimestamp;
     }
 
-    private long getNextSecond(long lastTimestamp) {
-        long timestamp = getCurrentSecond();
+    /**
+     * park到lastTimestamp的下一个时间单位，等待期间不占用CPU
+     * 所有等待的线程在下一秒（毫秒）开始时被唤醒，重新通过CAS竞争新的序列号
+     */
+    private long getNextTimestamp(long lastTimestamp) {
+        exhaustedWaitCount.increment();
+
+        long timestamp = getCurrentTimestamp();
         while (timestamp <= lastTimestamp) {
-            timestamp = getCurrentSecond();
+            long waitMillis = timestampUnit.toMillis(lastTimestamp + 1) - clock.currentMillis();
+            LockSupport.parkNanos(Math.max(TimeUnit.MILLISECONDS.toNanos(waitMillis), MIN_PARK_NANOS));
+            timestamp = getCurrentTimestamp();
         }
 
         return timestamp;
@@ -127,16 +325,63 @@ public class DefaultUidGenerator implements UidGenerator, InitializingBean {
     @Override
     public void afterPropertiesSet() throws Exception {
         bitsAllocator = new BitsAllocator(timeBits,workerIdBits,seqBits);
+        if (clock == null) {
+            sharedClock = TickingUidClock.acquireShared();
+            clock = sharedClock;
+        }
+        try {
+            if (clock.currentTime(timestampUnit) < epochTimestamp) {
+                throw new YahhUIDException("Epoch %s is later than the current time", epochStr);
+            }
+            if (clock.currentTime(timestampUnit) - epochTimestamp > bitsAllocator.getMaxDeltaSeconds()) {
+                throw new YahhUIDException("Timestamp bits %d can't hold the current time in %s since epoch", timeBits, timestampUnit);
+            }
+
+            this.checkBorrowLimit(workerIdAssigner.getMaxBorrowSeconds());
 
-        // 初始化workid
-        workerId = workerIdAssigner.assignWorkerId();
-        if (workerId > bitsAllocator.getMaxWorkerId()){
-            throw new RuntimeException("Worker id " + workerId + " exceeds the max " + bitsAllocator.getMaxWorkerId());
+            // 初始化workid
+            workerId = workerIdAssigner.assignWorkerId();
+            if (workerId > bitsAllocator.getMaxWorkerId()){
+                throw new RuntimeException("Worker id " + workerId + " exceeds the max " + bitsAllocator.getMaxWorkerId());
+            }
+        } catch (Exception e) {
+            // 初始化失败时不会再调用destroy，在这里释放共享时钟
+            this.releaseSharedClock();
+            throw e;
         }
 
         LOGGER.info("Initialized bits(1, {}, {}, {}) for workerID:{}", timeBits, workerIdBits, seqBits, workerId);
     }
 
+    @Override
+    public void destroy() throws Exception {
+        try {
+            if (workerId != null) {
+                workerIdAssigner.releaseWorkerId(this.getReusableMillis());
+            }
+        } finally {
+            this.releaseSharedClock();
+        }
+    }
+
+    /**
+     * 最后一个使用共享时钟的生成器关闭后，共享时钟的后台线程随之停止
+     */
+    private void releaseSharedClock() {
+        if (sharedClock != null) {
+            TickingUidClock.releaseShared(sharedClock);
+            sharedClock = null;
+        }
+    }
+
+    /**
+     * 已发出的uid中最大时间的下一个时间单位，转换为毫秒
+     */
+    protected long getReusableMillis() {
+        long lastSecond = this.getLastSecond();
+        return lastSecond < 0 ? 0L : timestampUnit.toMillis(lastSecond + 1);
+    }
+
     public int getTimeBits() {
         return timeBits;
     }
@@ -165,7 +410,12 @@ public class DefaultUidGenerator implements UidGenerator, InitializingBean {
         return epochStr;
     }
 
+    /**
+     * 解析为epochSeconds，已有数据的系统只能把时间基点往前调，往后调会使新id的时间部分变小而与已发出的id重复
+     */
     public void setEpochStr(String epochStr) {
+        Assert.hasText(epochStr, "Epoch must not be empty");
+        this.setEpochSeconds(TimeUnit.MILLISECONDS.toSeconds(DateUtils.parseByDayPattern(epochStr, EPOCH_TIME_ZONE).getTime()));
         this.epochStr = epochStr;
     }
 
@@ -175,6 +425,18 @@ public class DefaultUidGenerator implements UidGenerator, InitializingBean {
 
     public void setEpochSeconds(Long epochSeconds) {
         this.epochSeconds = epochSeconds;
+        this.epochTimestamp = timestampUnit.convert(epochSeconds, TimeUnit.SECONDS);
+    }
+
+    public TimeUnit getTimestampUnit() {
+        return timestampUnit;
+    }
+
+    public void setTimestampUnit(TimeUnit timestampUnit) {
+        Assert.isTrue(timestampUnit == TimeUnit.SECONDS || timestampUnit == TimeUnit.MILLISECONDS,
+                "Timestamp unit must be SECONDS or MILLISECONDS");
+        this.timestampUnit = timestampUnit;
+        this.epochTimestamp = timestampUnit.convert(epochSeconds, TimeUnit.SECONDS);
     }
 
     public BitsAllocator getBitsAllocator() {
@@ -194,19 +456,70 @@ public class DefaultUidGenerator implements UidGenerator, InitializingBean {
     }
 
     public long getSequence() {
-        return sequence;
+        return state.get() & ~(-1L << seqBits);
     }
 
     public void setSequence(long sequence) {
-        this.sequence = sequence;
+        state.updateAndGet(old -> ((old >> seqBits) << seqBits) | sequence);
     }
 
+    /**
+     * 最后生成id的时间，单位为timestampUnit
+     */
     public long getLastSecond() {
-        return lastSecond;
+        long lastDelta = state.get() >> seqBits;
+        return lastDelta < 0 ? START_STATE : lastDelta + epochTimestamp;
     }
 
     public void setLastSecond(long lastSecond) {
-        this.lastSecond = lastSecond;
+        long lastDeltaSeconds = lastSecond < 0 ? START_STATE : lastSecond - epochTimestamp;
+        state.updateAndGet(old -> (lastDeltaSeconds << seqBits) | (old & ~(-1L << seqBits)));
+    }
+
+    public long getMaxBorrowSeconds() {
+        return maxBorrowSeconds;
+    }
+
+    public void setMaxBorrowSeconds(long maxBorrowSeconds) {
+        Assert.isTrue(maxBorrowSeconds >= 0, "Max borrow seconds can't be negative!");
+        this.maxBorrowSeconds = maxBorrowSeconds;
+    }
+
+    public long getExhaustedWaitCount() {
+        return exhaustedWaitCount.sum();
+    }
+
+    public boolean isEnableBackward() {
+        return enableBackward;
+    }
+
+    public void setEnableBackward(boolean enableBackward) {
+        this.enableBackward = enableBackward;
+    }
+
+    public long getMaxBackwardSeconds() {
+        return maxBackwardSeconds;
+    }
+
+    public void setMaxBackwardSeconds(long maxBackwardSeconds) {
+        Assert.isTrue(maxBackwardSeconds >= 0, "Max backward seconds can't be negative");
+        this.maxBackwardSeconds = maxBackwardSeconds;
+    }
+
+    /**
+     * 被容忍的时钟回拨次数
+     */
+    public long getBackwardCount() {
+        return backwardCount.sum();
+    }
+
+    public UidClock getClock() {
+        return clock;
+    }
+
+    public void setClock(UidClock clock) {
+        Assert.notNull(clock, "Clock can't be null");
+        this.clock = clock;
     }
 
     public WorkerIdAssigner getWorkerIdAssigner() {
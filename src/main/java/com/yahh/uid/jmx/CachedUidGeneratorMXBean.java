@@ -0,0 +1,74 @@
+package com.yahh.uid.jmx;
+
+/**
+ * @author 邹磊
+ * @version 1.0
+ * @description: CachedUidGenerator的JMX管理接口
+ * @date 2021/5/17 10:20
+ *
+ * 只读属性都是读取环与填充线程中已有的计数，可修改的只有填充相关的参数，
+ * 环大小、分片数等决定环结构的参数只能在启动时配置
+ */
+public interface CachedUidGeneratorMXBean extends UidGeneratorMXBean {
+
+    int getBufferSize();
+
+    long getAvailable();
+
+    /**
+     * 可消费uid占环大小的百分比
+     */
+    double getFillPercent();
+
+    /**
+     * 各分片环的tail、cursor、剩余与填充阈值
+     */
+    String[] getRingBuffers();
+
+    long getTakenCount();
+
+    long getLowWaterCount();
+
+    long getRejectedPutCount();
+
+    long getRejectedTakeCount();
+
+    long getPaddingCount();
+
+    long getResizeCount();
+
+    long getPredictivePaddingCount();
+
+    long getThrottledPaddingCount();
+
+    /**
+     * 已填充的uid中的时间最多领先当前时间多少毫秒
+     */
+    long getDriftMillis();
+
+    int getPaddingFactor();
+
+    /**
+     * 剩余低于环大小的paddingFactor%时触发填充，范围(0, 100)
+     */
+    void setPaddingFactor(int paddingFactor);
+
+    long getPaddingHeadroom();
+
+    /**
+     * 预测填充的提前量，单位毫秒，0表示停止预测填充
+     */
+    void setPaddingHeadroom(long paddingHeadroom);
+
+    long getMaxPaddingBorrowSeconds();
+
+    /**
+     * 填充最多借用未来多少秒，-1表示不限制
+     */
+    void setMaxPaddingBorrowSeconds(long maxPaddingBorrowSeconds);
+
+    /**
+     * 立即唤醒填充线程填充
+     */
+    void refill();
+}
@@ -0,0 +1,128 @@
+package com.yahh.uid.jmx;
+
+import com.yahh.uid.impl.CachedUidGenerator;
+
+/**
+ * @author 邹磊
+ * @version 1.0
+ * @description: CachedUidGenerator的JMX管理实现
+ * @date 2021/5/17 10:48
+ */
+public class CachedUidGeneratorManagement extends UidGeneratorManagement implements CachedUidGeneratorMXBean {
+
+    private final CachedUidGenerator uidGenerator;
+
+
+    public CachedUidGeneratorManagement(CachedUidGenerator uidGenerator) {
+        super(uidGenerator);
+        this.uidGenerator = uidGenerator;
+    }
+
+
+    @Override
+    public String getType() {
+        return "cached";
+    }
+
+    @Override
+    public int getBufferSize() {
+        return uidGenerator.getBufferSize();
+    }
+
+    @Override
+    public long getAvailable() {
+        return uidGenerator.getAvailable();
+    }
+
+    @Override
+    public double getFillPercent() {
+        int bufferSize = uidGenerator.getBufferSize();
+        return bufferSize == 0 ? 0D : uidGenerator.getAvailable() * 100D / bufferSize;
+    }
+
+    @Override
+    public String[] getRingBuffers() {
+        return uidGenerator.getRingBufferStates();
+    }
+
+    @Override
+    public long getTakenCount() {
+        return uidGenerator.getTakenCount();
+    }
+
+    @Override
+    public long getLowWaterCount() {
+        return uidGenerator.getLowWaterCount();
+    }
+
+    @Override
+    public long getRejectedPutCount() {
+        return uidGenerator.getRejectedPutCount();
+    }
+
+    @Override
+    public long getRejectedTakeCount() {
+        return uidGenerator.getRejectedTakeCount();
+    }
+
+    @Override
+    public long getPaddingCount() {
+        return uidGenerator.getPaddingCount();
+    }
+
+    @Override
+    public long getResizeCount() {
+        return uidGenerator.getResizeCount();
+    }
+
+    @Override
+    public long getPredictivePaddingCount() {
+        return uidGenerator.getPredictivePaddingCount();
+    }
+
+    @Override
+    public long getThrottledPaddingCount() {
+        return uidGenerator.getThrottledPaddingCount();
+    }
+
+    @Override
+    public long getDriftMillis() {
+        return uidGenerator.getDriftMillis();
+    }
+
+    @Override
+    public int getPaddingFactor() {
+        return uidGenerator.getPaddingFactor();
+    }
+
+    @Override
+    public void setPaddingFactor(int paddingFactor) {
+        uidGenerator.setPaddingFactor(paddingFactor);
+    }
+
+    @Override
+    public long getPaddingHeadroom() {
+        return uidGenerator.getPaddingHeadroom();
+    }
+
+    @Override
+    public void setPaddingHeadroom(long paddingHeadroom) {
+        uidGenerator.setPaddingHeadroom(paddingHeadroom);
+    }
+
+    @Override
+    public long getMaxPaddingBorrowSeconds() {
+        Long maxBorrowSeconds = uidGenerator.getMaxPaddingBorrowSeconds();
+        return maxBorrowSeconds == null ? -1L : maxBorrowSeconds;
+    }
+
+    @Override
+    public void setMaxPaddingBorrowSeconds(long maxPaddingBorrowSeconds) {
+        uidGenerator.setMaxPaddingBorrowSeconds(maxPaddingBorrowSeconds < 0 ? null : maxPaddingBorrowSeconds);
+    }
+
+    @Override
+    public void refill() {
+        uidGenerator.refill();
+    }
+}
@@ -0,0 +1,116 @@
+package com.yahh.uid.jmx;
+
+import com.yahh.uid.impl.CachedUidGenerator;
+import com.yahh.uid.impl.DefaultUidGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * @author 邹磊
+ * @version 1.0
+ * @description: 生成器初始化完成后注册到platform MBeanServer
+ * @date 2021/5/17 11:05
+ *
+ * 生成器是@Lazy的，在BeanPostProcessor中注册可以保证第一次使用时才注册，
+ * ObjectName为 com.yahh.uid:type=UidGenerator,context=应用上下文id,name=beanName，不在Spring容器中使用时没有context
+ *
+ * 同一个JVM中的多个应用上下文共享platform MBeanServer，context用来区分各自的生成器；
+ * ObjectName已被注册（例如两个上下文的id相同）时跳过并打WARN，不替换也不注销其它上下文的MBean
+ */
+public class UidGeneratorMBeanRegistrar implements BeanPostProcessor, DisposableBean, ApplicationContextAware {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(UidGeneratorMBeanRegistrar.class);
+
+    public static final String DOMAIN = "com.yahh.uid";
+
+    private final MBeanServer mBeanServer;
+    private final List<ObjectName> registered = new CopyOnWriteArrayList<>();
+    private String contextId;
+
+
+    public UidGeneratorMBeanRegistrar() {
+        this(ManagementFactory.getPlatformMBeanServer());
+    }
+
+
+    public UidGeneratorMBeanRegistrar(MBeanServer mBeanServer) {
+        this.mBeanServer = mBeanServer;
+    }
+
+
+    @Override
+    public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
+        this.contextId = applicationContext.getId();
+    }
+
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+        if (bean instanceof DefaultUidGenerator) {
+            register((DefaultUidGenerator) bean, beanName);
+        }
+        return bean;
+    }
+
+
+    /**
+     * 注册失败只打日志，不影响生成器的使用
+     */
+    public void register(DefaultUidGenerator uidGenerator, String name) {
+        try {
+            ObjectName objectName = this.objectName(name);
+            if (mBeanServer.isRegistered(objectName)) {
+                LOGGER.warn("Uid generator MBean {} is registered by another context, skip {}", objectName, name);
+                return;
+            }
+            StandardMBean mBean = uidGenerator instanceof CachedUidGenerator
+                    ? new StandardMBean(new CachedUidGeneratorManagement((CachedUidGenerator) uidGenerator), CachedUidGeneratorMXBean.class, true)
+                    : new StandardMBean(new UidGeneratorManagement(uidGenerator), UidGeneratorMXBean.class, true);
+            mBeanServer.registerMBean(mBean, objectName);
+            registered.add(objectName);
+            LOGGER.info("Registered uid generator MBean {}", objectName);
+        } catch (Exception e) {
+            LOGGER.warn("Failed to register uid generator MBean for {}", name, e);
+        }
+    }
+
+
+    private ObjectName objectName(String name) throws MalformedObjectNameException {
+        StringBuilder objectName = new StringBuilder(DOMAIN).append(":type=UidGenerator");
+        if (contextId != null) {
+            objectName.append(",context=").append(ObjectName.quote(contextId));
+        }
+        return ObjectName.getInstance(objectName.append(",name=").append(ObjectName.quote(name)).toString());
+    }
+
+
+    /**
+     * 只注销本实例注册的MBean
+     */
+    @Override
+    public void destroy() {
+        for (ObjectName objectName : registered) {
+            try {
+                if (mBeanServer.isRegistered(objectName)) {
+                    mBeanServer.unregisterMBean(objectName);
+                }
+            } catch (Exception e) {
+                LOGGER.warn("Failed to unregister uid generator MBean {}", objectName, e);
+            }
+        }
+        registered.clear();
+    }
+}
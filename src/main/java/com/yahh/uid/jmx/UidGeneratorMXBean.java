@@ -0,0 +1,36 @@
+package com.yahh.uid.jmx;
+
+/**
+ * @author 邹磊
+ * @version 1.0
+ * @description: uid生成器的JMX管理接口，只读
+ * @date 2021/5/17 10:12
+ */
+public interface UidGeneratorMXBean {
+
+    /**
+     * standard或cached
+     */
+    String getType();
+
+    long getWorkerId();
+
+    String getTimestampUnit();
+
+    /**
+     * 最近一次生成id使用的时间，单位与TimestampUnit一致
+     */
+    long getLastSecond();
+
+    /**
+     * 序列号用尽等待下一秒的次数
+     */
+    long getExhaustedWaitCount();
+
+    /**
+     * 检测到时钟回拨的次数
+     */
+    long getBackwardCount();
+
+    boolean isEnableBackward();
+}
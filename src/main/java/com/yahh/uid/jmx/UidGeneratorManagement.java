@@ -0,0 +1,55 @@
+package com.yahh.uid.jmx;
+
+import com.yahh.uid.impl.DefaultUidGenerator;
+
+/**
+ * @author 邹磊
+ * @version 1.0
+ * @description: DefaultUidGenerator的JMX管理实现，只做委托
+ * @date 2021/5/17 10:35
+ */
+public class UidGeneratorManagement implements UidGeneratorMXBean {
+
+    private final DefaultUidGenerator uidGenerator;
+
+
+    public UidGeneratorManagement(DefaultUidGenerator uidGenerator) {
+        this.uidGenerator = uidGenerator;
+    }
+
+
+    @Override
+    public String getType() {
+        return "standard";
+    }
+
+    @Override
+    public long getWorkerId() {
+        return uidGenerator.getWorkerId();
+    }
+
+    @Override
+    public String getTimestampUnit() {
+        return uidGenerator.getTimestampUnit().name();
+    }
+
+    @Override
+    public long getLastSecond() {
+        return uidGenerator.getLastSecond();
+    }
+
+    @Override
+    public long getExhaustedWaitCount() {
+        return uidGenerator.getExhaustedWaitCount();
+    }
+
+    @Override
+    public long getBackwardCount() {
+        return uidGenerator.getBackwardCount();
+    }
+
+    @Override
+    public boolean isEnableBackward() {
+        return uidGenerator.isEnableBackward();
+    }
+}
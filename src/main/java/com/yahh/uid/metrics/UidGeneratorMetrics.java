@@ -0,0 +1,151 @@
+package com.yahh.uid.metrics;
+
+import com.yahh.uid.UidGenerator;
+import com.yahh.uid.impl.CachedUidGenerator;
+import com.yahh.uid.impl.DefaultUidGenerator;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author 邹磊
+ * @version 1.0
+ * @description: uid生成器的Micrometer指标
+ * @date 2021/5/15 14:36
+ *
+ * 所有指标都是在采集时读取生成器中已有的计数（LongAdder/AtomicLong/cursor），
+ * 不在getUID()路径上增加任何分配或锁
+ */
+public class UidGeneratorMetrics implements MeterBinder {
+
+    private static final String PREFIX = "uid.";
+
+    private final UidGenerator uidGenerator;
+    private final Iterable<Tag> tags;
+
+
+    public UidGeneratorMetrics(UidGenerator uidGenerator) {
+        this(uidGenerator, Tags.empty());
+    }
+
+
+    public UidGeneratorMetrics(UidGenerator uidGenerator, Iterable<Tag> tags) {
+        this.uidGenerator = uidGenerator;
+        this.tags = Tags.concat(tags, "type", uidGenerator instanceof CachedUidGenerator ? "cached" : "standard");
+    }
+
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        if (uidGenerator instanceof DefaultUidGenerator) {
+            bindGenerator(registry, (DefaultUidGenerator) uidGenerator);
+        }
+        if (uidGenerator instanceof CachedUidGenerator) {
+            bindRingBuffer(registry, (CachedUidGenerator) uidGenerator);
+        }
+    }
+
+
+    private void bindGenerator(MeterRegistry registry, DefaultUidGenerator generator) {
+        FunctionCounter.builder(PREFIX + "sequence.exhausted.waits", generator, DefaultUidGenerator::getExhaustedWaitCount)
+                .tags(tags)
+                .description("Times a caller waited for the next second because the sequence was exhausted")
+                .register(registry);
+
+        FunctionCounter.builder(PREFIX + "clock.backwards", generator, DefaultUidGenerator::getBackwardCount)
+                .tags(tags)
+                .description("Tolerated clock rollbacks")
+                .register(registry);
+    }
+
+
+    private void bindRingBuffer(MeterRegistry registry, CachedUidGenerator generator) {
+        Gauge.builder(PREFIX + "ring.size", generator, CachedUidGenerator::getBufferSize)
+                .tags(tags)
+                .description("Total slots of all ring buffer shards")
+                .register(registry);
+
+        Gauge.builder(PREFIX + "ring.available", generator, CachedUidGenerator::getAvailable)
+                .tags(tags)
+                .description("UIDs ready to be taken")
+                .register(registry);
+
+        Gauge.builder(PREFIX + "ring.fill", generator, g -> (double) g.getAvailable() / g.getBufferSize())
+                .tags(tags)
+                .description("Ratio of available UIDs to ring size")
+                .register(registry);
+
+        FunctionCounter.builder(PREFIX + "ring.takes", generator, CachedUidGenerator::getTakenCount)
+                .tags(tags)
+                .description("UIDs taken from the ring buffer")
+                .register(registry);
+
+        FunctionCounter.builder(PREFIX + "ring.low.water", generator, CachedUidGenerator::getLowWaterCount)
+                .tags(tags)
+                .description("Takes that found the ring below the padding threshold")
+                .register(registry);
+
+        FunctionCounter.builder(PREFIX + "ring.rejected.puts", generator, CachedUidGenerator::getRejectedPutCount)
+                .tags(tags)
+                .description("Puts rejected because the ring was full, not counting the end of each refill")
+                .register(registry);
+
+        FunctionCounter.builder(PREFIX + "ring.rejected.takes", generator, CachedUidGenerator::getRejectedTakeCount)
+                .tags(tags)
+                .description("Takes rejected because the ring was empty")
+                .register(registry);
+
+        FunctionCounter.builder(PREFIX + "ring.resizes", generator, CachedUidGenerator::getResizeCount)
+                .tags(tags)
+                .description("Adaptive ring buffer resizes")
+                .register(registry);
+
+        FunctionTimer.builder(PREFIX + "padding", generator, CachedUidGenerator::getPaddingCount,
+                CachedUidGenerator::getPaddingNanos, TimeUnit.NANOSECONDS)
+                .tags(tags)
+                .description("Ring buffer refills")
+                .register(registry);
+
+        FunctionCounter.builder(PREFIX + "padding.throttled", generator, CachedUidGenerator::getThrottledPaddingCount)
+                .tags(tags)
+                .description("Refills paused by the borrow-ahead limit")
+                .register(registry);
+
+        TimeGauge.builder(PREFIX + "padding.drift", generator, TimeUnit.MILLISECONDS, CachedUidGenerator::getDriftMillis)
+                .tags(tags)
+                .description("How far the newest padded timestamp runs ahead of the clock")
+                .register(registry);
+
+        // 预测相关的指标总是注册，未开启预测填充时读数为0，运行中通过JMX开启后无需重新绑定
+        Gauge.builder(PREFIX + "ring.take.rate", generator, CachedUidGenerator::getTakeRate)
+                .tags(tags)
+                .description("EWMA of UIDs taken per second, 0 until padding prediction samples it")
+                .register(registry);
+
+        TimeGauge.builder(PREFIX + "ring.time.to.empty", generator, TimeUnit.MILLISECONDS, UidGeneratorMetrics::millisToEmpty)
+                .tags(tags)
+                .description("Projected time until the ring is empty at the current take rate, 0 while the rate is unknown")
+                .register(registry);
+
+        FunctionCounter.builder(PREFIX + "padding.predictive", generator, CachedUidGenerator::getPredictivePaddingCount)
+                .tags(tags)
+                .description("Refills triggered by the take rate prediction")
+                .register(registry);
+    }
+
+
+    /**
+     * 没有采样到获取速率时getMillisToEmpty()返回Long.MAX_VALUE，指标中报告为0
+     */
+    private static double millisToEmpty(CachedUidGenerator generator) {
+        long millisToEmpty = generator.getMillisToEmpty();
+        return millisToEmpty == Long.MAX_VALUE ? 0 : millisToEmpty;
+    }
+}
@@ -0,0 +1,51 @@
+package com.yahh.uid.metrics;
+
+import com.yahh.uid.UidGenerator;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+/**
+ * @author 邹磊
+ * @version 1.0
+ * @description: 生成器初始化完成后绑定Micrometer指标
+ * @date 2021/5/23 10:20
+ *
+ * 生成器是@Lazy的，不能在MeterRegistry绑定MeterBinder时获取生成器，否则应用启动时就会分配workerId；
+ * 在BeanPostProcessor中绑定可以保证第一次使用生成器时才注册指标，与{@link com.yahh.uid.jmx.UidGeneratorMBeanRegistrar}一致
+ */
+public class UidGeneratorMetricsRegistrar implements BeanPostProcessor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(UidGeneratorMetricsRegistrar.class);
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+
+    public UidGeneratorMetricsRegistrar(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+
+    /**
+     * 没有唯一（或@Primary）的MeterRegistry时不绑定，绑定失败只打日志，不影响生成器的使用
+     * 指标以beanName作为name标签，同一类型的多个生成器各自注册，不会因为标签相同而被忽略
+     */
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+        if (bean instanceof UidGenerator) {
+            try {
+                MeterRegistry registry = meterRegistry.getIfUnique();
+                if (registry != null) {
+                    new UidGeneratorMetrics((UidGenerator) bean, Tags.of("name", beanName)).bindTo(registry);
+                }
+            } catch (Exception e) {
+                LOGGER.warn("Failed to bind uid generator metrics for {}", beanName, e);
+            }
+        }
+        return bean;
+    }
+}
@@ -18,8 +18,11 @@ package com.yahh.uid.utils;
 import org.apache.commons.lang.time.DateFormatUtils;
 
 import java.text.ParseException;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.TimeZone;
 
 /**
  * @author 邹磊
@@ -46,6 +49,26 @@ public abstract class DateUtils extends org.apache.commons.lang.time.DateUtils {
         return parseDate(str, DAY_PATTERN);
     }
 
+    /**
+     * Parse date by 'yyyy-MM-dd' pattern in the given time zone
+     *
+     * @param str
+     * @param timeZone
+     * @return
+     * @throws IllegalArgumentException when the date is not in 'yyyy-MM-dd' pattern
+     */
+    public static Date parseByDayPattern(String str, TimeZone timeZone) {
+        SimpleDateFormat format = new SimpleDateFormat(DAY_PATTERN);
+        format.setLenient(false);
+        format.setTimeZone(timeZone);
+        ParsePosition position = new ParsePosition(0);
+        Date date = format.parse(str, position);
+        if (date == null || position.getIndex() != str.length()) {
+            throw new IllegalArgumentException("Date " + str + " is not in " + DAY_PATTERN + " pattern");
+        }
+        return date;
+    }
+
     /**
      * Parse date by 'yyyy-MM-dd HH:mm:ss' pattern
      *
@@ -0,0 +1,37 @@
+package com.yahh.uid.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * @author 邹磊
+ * @version 1.0
+ * @description: 虚拟线程工厂，项目按JDK 8编译，通过反射调用Thread.ofVirtual()
+ * @date 2021/5/9 16:20
+ */
+public final class VirtualThreads {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(VirtualThreads.class);
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * 运行时支持虚拟线程时返回以name为前缀命名的虚拟线程工厂，否则返回null
+     */
+    public static ThreadFactory factory(String name) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, name + "-", 1L);
+            Method factory = builderClass.getMethod("factory");
+            return (ThreadFactory) factory.invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.debug("Virtual threads are not supported by current JVM", e);
+            return null;
+        }
+    }
+}
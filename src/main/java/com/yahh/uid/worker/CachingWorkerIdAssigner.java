@@ -0,0 +1,241 @@
+package com.yahh.uid.worker;
+
+import com.yahh.uid.clock.SystemUidClock;
+import com.yahh.uid.clock.UidClock;
+import com.yahh.uid.utils.DockerUtils;
+import com.yahh.uid.utils.NetUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.util.Assert;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author 邹磊
+ * @version 1.0
+ * @description: 把分配到的workerId缓存在本地文件中，重启时校验通过则直接复用，不访问数据库
+ * @date 2021/5/19 10:05
+ *
+ * 文件中记录workerId、host/port以及已发出uid中的最大时间，满足以下条件才复用：
+ * 1. 上次是正常关闭的，异常退出时不知道发到了哪一秒
+ * 2. host/port与当前节点一致，避免文件被复制到其它机器或容器
+ * 3. 当前时间已经超过上次发出的最大时间，超出不多时等待，否则时钟落后太多，重新分配
+ *
+ * 运行期间持有文件锁，同一台机器上的其它进程使用同一个文件时不复用也不写入，直接分配新的id
+ * 只适用于id不会被其它节点复用的分配方式，如{@link DisposableWorkerIdAssigner}，不能与租约方式一起使用
+ */
+public class CachingWorkerIdAssigner implements WorkerIdAssigner, DisposableBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CachingWorkerIdAssigner.class);
+
+    /**
+     * 时钟落后上次发出的最大时间不超过该值时等待时钟追上
+     */
+    private static final long MAX_WAIT_MILLIS = 3000L;
+
+    private static final String WORKER_ID = "workerId";
+    private static final String HOST = "host";
+    private static final String PORT = "port";
+    private static final String REUSABLE_MILLIS = "reusableMillis";
+    private static final String CLEAN = "clean";
+
+    private final WorkerIdAssigner delegate;
+    private final File cacheFile;
+    private UidClock clock = new SystemUidClock();
+
+    private FileChannel channel;
+    private FileLock lock;
+    private Long workerId;
+
+
+    public CachingWorkerIdAssigner(WorkerIdAssigner delegate, File cacheFile) {
+        Assert.notNull(delegate, "Delegate worker id assigner can't be null!");
+        Assert.notNull(cacheFile, "Cache file can't be null!");
+        this.delegate = delegate;
+        this.cacheFile = cacheFile;
+    }
+
+
+    @Override
+    public synchronized long assignWorkerId() {
+        Assert.state(workerId == null, "Worker id has been assigned: " + workerId);
+        if (!this.tryLock()) {
+            LOGGER.warn("Worker id cache {} is used by another process, assign without cache", cacheFile);
+            return delegate.assignWorkerId();
+        }
+
+        String[] identity = currentIdentity();
+        Long cached = null;
+        try {
+            cached = this.reuse(this.read(), identity);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Read worker id cache {} exception, assign from delegate", cacheFile, e);
+        }
+        workerId = cached != null ? cached : delegate.assignWorkerId();
+
+        // 运行期间标记为未正常关闭，异常退出后不再复用
+        this.write(identity, 0L, false);
+        LOGGER.info("{} worker id {} with cache file {}", cached != null ? "Reuse cached" : "Assigned", workerId, cacheFile);
+        return workerId;
+    }
+
+
+    /**
+     * 校验缓存，可以复用时返回workerId，否则返回null
+     */
+    private Long reuse(Properties properties, String[] identity) {
+        if (properties.isEmpty()) {
+            return null;
+        }
+        if (!Boolean.parseBoolean(properties.getProperty(CLEAN))) {
+            LOGGER.info("Worker id cache {} was not closed cleanly", cacheFile);
+            return null;
+        }
+        if (!identity[0].equals(properties.getProperty(HOST)) || !identity[1].equals(properties.getProperty(PORT))) {
+            LOGGER.info("Worker id cache {} belongs to {}:{}", cacheFile, properties.getProperty(HOST), properties.getProperty(PORT));
+            return null;
+        }
+
+        long waitMillis = Long.parseLong(properties.getProperty(REUSABLE_MILLIS)) - clock.currentMillis();
+        if (waitMillis > MAX_WAIT_MILLIS) {
+            LOGGER.warn("Clock is {} ms behind the last issued uid in {}", waitMillis, cacheFile);
+            return null;
+        }
+        while (waitMillis > 0) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(waitMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            waitMillis = Long.parseLong(properties.getProperty(REUSABLE_MILLIS)) - clock.currentMillis();
+        }
+        return Long.valueOf(properties.getProperty(WORKER_ID));
+    }
+
+
+    @Override
+    public boolean isWorkerIdValid() {
+        return delegate.isWorkerIdValid();
+    }
+
+
+    @Override
+    public Long getMaxBorrowSeconds() {
+        return delegate.getMaxBorrowSeconds();
+    }
+
+
+    /**
+     * 生成器正常关闭，记录最大时间并标记为可复用
+     */
+    @Override
+    public synchronized void releaseWorkerId(long reusableMillis) {
+        if (workerId != null && lock != null) {
+            this.write(currentIdentity(), reusableMillis, true);
+        }
+        delegate.releaseWorkerId(reusableMillis);
+    }
+
+
+    @Override
+    public synchronized void destroy() throws Exception {
+        if (lock != null) {
+            lock.release();
+            lock = null;
+        }
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+
+    private boolean tryLock() {
+        try {
+            File parent = cacheFile.getAbsoluteFile().getParentFile();
+            if (parent != null && !parent.exists() && !parent.mkdirs()) {
+                throw new IOException("Failed to create directory " + parent);
+            }
+            channel = FileChannel.open(cacheFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            lock = channel.tryLock();
+        } catch (IOException | OverlappingFileLockException e) {
+            LOGGER.warn("Lock worker id cache {} exception", cacheFile, e);
+        }
+        if (lock == null && channel != null) {
+            try {
+                channel.close();
+            } catch (IOException ignored) {
+            }
+            channel = null;
+        }
+        return lock != null;
+    }
+
+
+    private Properties read() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(channel.size(), 4096));
+        while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) > 0) {
+        }
+        Properties properties = new Properties();
+        properties.load(new ByteArrayInputStream(buffer.array(), 0, buffer.position()));
+        return properties;
+    }
+
+
+    /**
+     * 写入失败只打日志，下次启动时重新分配
+     */
+    private void write(String[] identity, long reusableMillis, boolean clean) {
+        Properties properties = new Properties();
+        properties.setProperty(WORKER_ID, String.valueOf(workerId));
+        properties.setProperty(HOST, identity[0]);
+        properties.setProperty(PORT, identity[1]);
+        properties.setProperty(REUSABLE_MILLIS, String.valueOf(reusableMillis));
+        properties.setProperty(CLEAN, String.valueOf(clean));
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            properties.store(out, "yahh uid worker id cache");
+            ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray());
+            channel.truncate(0);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, buffer.position());
+            }
+            channel.force(true);
+        } catch (IOException e) {
+            LOGGER.warn("Write worker id cache {} exception", cacheFile, e);
+        }
+    }
+
+
+    /**
+     * 容器中为宿主机host与映射的端口，否则为本机地址，不区分端口
+     */
+    private static String[] currentIdentity() {
+        if (DockerUtils.isDocker()) {
+            return new String[]{DockerUtils.getDockerHost(), DockerUtils.getDockerPort()};
+        }
+        return new String[]{NetUtils.getLocalAddress(), ""};
+    }
+
+
+    public void setClock(UidClock clock) {
+        Assert.notNull(clock, "Clock can't be null!");
+        this.clock = clock;
+    }
+
+    public Long getWorkerId() {
+        return workerId;
+    }
+}
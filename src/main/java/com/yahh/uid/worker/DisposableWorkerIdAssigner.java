@@ -23,11 +23,20 @@ public class DisposableWorkerIdAssigner implements WorkerIdAssigner {
     @Autowired
     private WorkerNodeDAO workerNodeDAO;
 
+
+    public DisposableWorkerIdAssigner() {
+    }
+
+
+    public DisposableWorkerIdAssigner(WorkerNodeDAO workerNodeDAO) {
+        this.workerNodeDAO = workerNodeDAO;
+    }
+
     @Override
     @Transactional(rollbackFor = Exception.class)
     public long assignWorkerId() {
 
-        WorkerNodeEntity workerNodeEntity = this.buildWorkerNode();
+        WorkerNodeEntity workerNodeEntity = buildWorkerNode();
 
         workerNodeDAO.addWorkerNode(workerNodeEntity);
 
@@ -37,7 +46,10 @@ public class DisposableWorkerIdAssigner implements WorkerIdAssigner {
     }
 
 
-    private WorkerNodeEntity buildWorkerNode(){
+    /**
+     * 按当前节点的host与port构建节点信息
+     */
+    static WorkerNodeEntity buildWorkerNode(){
         WorkerNodeEntity workerNodeEntity = new WorkerNodeEntity();
 
         if (DockerUtils.isDocker()){
@@ -0,0 +1,314 @@
+package com.yahh.uid.worker;
+
+import com.yahh.uid.clock.SystemUidClock;
+import com.yahh.uid.clock.UidClock;
+import com.yahh.uid.exception.YahhUIDException;
+import com.yahh.uid.utils.NetUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.util.Assert;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author 邹磊
+ * @version 1.0
+ * @description: 在本机共享目录中通过文件锁分配workerId，不依赖数据库
+ * @date 2021/5/20 14:10
+ *
+ * 每个id对应目录中的一个锁文件 worker-{id}.lock，从minWorkerId开始依次tryLock，第一个加锁成功的即为本进程的id，
+ * 锁在进程存活期间一直持有，进程退出（包括被kill）时由操作系统释放，id可以被其它进程使用
+ *
+ * 锁文件中记录上一个持有者已发出uid的最大时间，加锁成功后：
+ * 1. 空文件说明id没有用过，直接使用
+ * 2. 上次正常关闭时{@link #releaseWorkerId(long)}记录了reusableMillis，等待时钟超过该时间，
+ *    落后超过MAX_WAIT_MILLIS时放弃该id，尝试下一个
+ * 3. 上次异常退出时不知道发到了哪一秒，等待crashWaitSeconds，需要大于生成器借用未来时间的上限加1秒，
+ *    所以{@link #getMaxBorrowSeconds()}为 crashWaitSeconds - 2，生成器初始化时据此限制借用
+ *
+ * 只能保证同一台机器上的进程之间不重复，多台机器需要给每台机器配置不重叠的[minWorkerId, maxWorkerId]
+ * 锁文件不删除，删除后其它进程可能锁住一个新建的同名文件，从而拿到同一个id
+ *
+ * 文件锁属于进程，同一个JVM中关闭同一文件的任意channel都会释放该进程在这个文件上的锁，
+ * 所以本JVM已持有的锁文件记录在LOCKED_FILES中，扫描时直接跳过，不再打开
+ */
+public class FileLockWorkerIdAssigner implements WorkerIdAssigner, DisposableBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileLockWorkerIdAssigner.class);
+
+    private static final Set<String> LOCKED_FILES = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 时钟落后上次发出的最大时间不超过该值时等待时钟追上
+     */
+    private static final long MAX_WAIT_MILLIS = 3000L;
+
+    private static final String OWNER = "owner";
+    private static final String REUSABLE_MILLIS = "reusableMillis";
+    private static final String CLEAN = "clean";
+
+    private final File directory;
+    private long minWorkerId = 0L;
+    private long maxWorkerId = 1023L;
+    private long crashWaitSeconds = 5L;
+    private UidClock clock = new SystemUidClock();
+
+    private FileChannel channel;
+    private volatile FileLock lock;
+    private String lockedPath;
+    private Long workerId;
+
+
+    public FileLockWorkerIdAssigner(File directory) {
+        Assert.notNull(directory, "Worker id directory can't be null!");
+        this.directory = directory;
+    }
+
+
+    @Override
+    public synchronized long assignWorkerId() {
+        Assert.state(workerId == null, "Worker id has been assigned: " + workerId);
+        if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+            throw new YahhUIDException("Failed to create worker id directory %s", directory);
+        }
+
+        for (long id = minWorkerId; id <= maxWorkerId; id++) {
+            if (!this.tryLock(id)) {
+                continue;
+            }
+            if (!this.waitUntilReusable(id)) {
+                this.unlock();
+                continue;
+            }
+            workerId = id;
+            // 运行期间标记为未正常关闭，异常退出后下一个持有者按crashWaitSeconds等待
+            this.write(0L, false);
+            LOGGER.info("Locked worker id {} in {}", id, directory);
+            return id;
+        }
+        throw new YahhUIDException("No free worker id in [%d, %d] under %s", minWorkerId, maxWorkerId, directory);
+    }
+
+
+    /**
+     * 先在本JVM内占住锁文件，再尝试加文件锁，失败时关闭文件并退还
+     */
+    private boolean tryLock(long id) {
+        File lockFile = new File(directory, "worker-" + id + ".lock");
+        String path = lockFile.getAbsolutePath();
+        if (!LOCKED_FILES.add(path)) {
+            return false;
+        }
+
+        FileChannel fileChannel = null;
+        try {
+            fileChannel = FileChannel.open(lockFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            FileLock fileLock = fileChannel.tryLock();
+            if (fileLock != null) {
+                this.channel = fileChannel;
+                this.lock = fileLock;
+                this.lockedPath = path;
+                return true;
+            }
+        } catch (IOException | OverlappingFileLockException e) {
+            LOGGER.warn("Lock worker id file {} exception", lockFile, e);
+        }
+        LOGGER.debug("Worker id file {} is locked by another process", lockFile);
+        if (fileChannel != null) {
+            try {
+                fileChannel.close();
+            } catch (IOException ignored) {
+            }
+        }
+        LOCKED_FILES.remove(path);
+        return false;
+    }
+
+
+    /**
+     * 按锁文件中上一个持有者的记录等待，时钟落后太多时返回false
+     */
+    private boolean waitUntilReusable(long id) {
+        Properties properties;
+        try {
+            properties = this.read();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Read worker id file of {} exception, treat it as crashed", id, e);
+            properties = new Properties();
+            properties.setProperty(CLEAN, "false");
+        }
+        if (properties.isEmpty()) {
+            return true;
+        }
+
+        long reusableMillis;
+        if (Boolean.parseBoolean(properties.getProperty(CLEAN))) {
+            reusableMillis = Long.parseLong(properties.getProperty(REUSABLE_MILLIS));
+            if (reusableMillis - clock.currentMillis() > MAX_WAIT_MILLIS) {
+                LOGGER.warn("Clock is {} ms behind the last issued uid of worker id {}, try next",
+                        reusableMillis - clock.currentMillis(), id);
+                return false;
+            }
+        } else {
+            reusableMillis = clock.currentMillis() + TimeUnit.SECONDS.toMillis(crashWaitSeconds);
+            LOGGER.info("Worker id {} was not released cleanly by {}, wait {} seconds", id, properties.getProperty(OWNER), crashWaitSeconds);
+        }
+
+        long waitMillis = reusableMillis - clock.currentMillis();
+        while (waitMillis > 0) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(waitMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                this.unlock();
+                throw new YahhUIDException("Interrupted while waiting worker id %d to be reusable", id);
+            }
+            waitMillis = reusableMillis - clock.currentMillis();
+        }
+        return true;
+    }
+
+
+    private Properties read() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(channel.size(), 4096));
+        while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) > 0) {
+        }
+        Properties properties = new Properties();
+        properties.load(new ByteArrayInputStream(buffer.array(), 0, buffer.position()));
+        if (!properties.isEmpty()) {
+            try {
+                Long.parseLong(properties.getProperty(REUSABLE_MILLIS));
+            } catch (NumberFormatException e) {
+                // 旧版本只写入了持有者信息，没有记录时间，按异常退出处理
+                properties.setProperty(CLEAN, "false");
+            }
+        }
+        return properties;
+    }
+
+
+    /**
+     * 写入持有者信息与已发出uid的最大时间，写入失败只打日志，下一个持有者按异常退出处理
+     */
+    private void write(long reusableMillis, boolean clean) {
+        Properties properties = new Properties();
+        properties.setProperty(OWNER, ManagementFactory.getRuntimeMXBean().getName() + " " + NetUtils.getLocalAddress());
+        properties.setProperty(REUSABLE_MILLIS, String.valueOf(reusableMillis));
+        properties.setProperty(CLEAN, String.valueOf(clean));
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            properties.store(out, "yahh uid worker id lock");
+            ByteBuffer buffer = ByteBuffer.wrap(out.toByteArray());
+            channel.truncate(0);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, buffer.position());
+            }
+            channel.force(true);
+        } catch (IOException e) {
+            LOGGER.warn("Write worker id file of {} exception", workerId, e);
+        }
+    }
+
+
+    @Override
+    public boolean isWorkerIdValid() {
+        FileLock current = lock;
+        return current != null && current.isValid();
+    }
+
+
+    /**
+     * 异常退出后下一个持有者只等待crashWaitSeconds，借用的未来时间需要比它少1秒以上
+     */
+    @Override
+    public Long getMaxBorrowSeconds() {
+        return Math.max(0L, crashWaitSeconds - 2);
+    }
+
+
+    /**
+     * 生成器正常关闭，记录最大时间并标记为正常释放，下一个持有者只需要等到该时间之后
+     */
+    @Override
+    public synchronized void releaseWorkerId(long reusableMillis) {
+        if (workerId != null && lock != null) {
+            this.write(reusableMillis, true);
+        }
+    }
+
+
+    @Override
+    public synchronized void destroy() throws Exception {
+        this.unlock();
+    }
+
+
+    private void unlock() {
+        try {
+            if (lock != null) {
+                lock.release();
+            }
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Unlock worker id file {} exception", lockedPath, e);
+        } finally {
+            lock = null;
+            channel = null;
+            if (lockedPath != null) {
+                LOCKED_FILES.remove(lockedPath);
+                lockedPath = null;
+            }
+        }
+    }
+
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public Long getWorkerId() {
+        return workerId;
+    }
+
+    public void setMinWorkerId(long minWorkerId) {
+        Assert.isTrue(minWorkerId >= 0, "Min worker id can't be negative!");
+        this.minWorkerId = minWorkerId;
+    }
+
+    /**
+     * 一般为workerIdBits能表示的最大值
+     */
+    public void setMaxWorkerId(long maxWorkerId) {
+        Assert.isTrue(maxWorkerId >= 0, "Max worker id can't be negative!");
+        this.maxWorkerId = maxWorkerId;
+    }
+
+    /**
+     * 上一个持有者异常退出时等待的秒数
+     */
+    public void setCrashWaitSeconds(long crashWaitSeconds) {
+        Assert.isTrue(crashWaitSeconds >= 0, "Crash wait seconds can't be negative!");
+        this.crashWaitSeconds = crashWaitSeconds;
+    }
+
+    public void setClock(UidClock clock) {
+        Assert.notNull(clock, "Clock can't be null!");
+        this.clock = clock;
+    }
+}
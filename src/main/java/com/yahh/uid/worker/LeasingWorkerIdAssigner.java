@@ -0,0 +1,297 @@
+package com.yahh.uid.worker;
+
+import com.yahh.uid.clock.SystemUidClock;
+import com.yahh.uid.clock.UidClock;
+import com.yahh.uid.exception.YahhUIDException;
+import com.yahh.uid.utils.NamingThreadFactory;
+import com.yahh.uid.worker.dao.WorkerNodeDAO;
+import com.yahh.uid.worker.entity.WorkerNodeEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.util.Assert;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author 邹磊
+ * @version 1.0
+ * @description: 以租约方式分配workerId，节点下线或租约过期后id可以被其它节点复用
+ * @date 2021/5/18 15:40
+ *
+ * WORKER_NODE表的MODIFIED作为租约的心跳时间，需要先增加一列标记以租约方式分配的行：
+ * ALTER TABLE WORKER_NODE ADD COLUMN REUSABLE_MILLIS BIGINT NULL
+ * 1. 启动时优先接管REUSABLE_MILLIS不为null、MODIFIED早于leaseSeconds之前的最小id，没有可接管的id时才插入新行，
+ *    {@link DisposableWorkerIdAssigner}插入的行REUSABLE_MILLIS为null，不会被接管
+ * 2. 心跳线程每heartbeatSeconds秒更新一次MODIFIED
+ * 3. 生成器关闭时通过{@link #releaseWorkerId(long)}把已发出uid的最大时间写入REUSABLE_MILLIS，
+ *    并把MODIFIED改到过期时间之前，其它节点可以立即接管，接管后等到时钟超过REUSABLE_MILLIS才返回；
+ *    REUSABLE_MILLIS比当前时间晚MAX_REUSE_WAIT_MILLIS以上的id不接管。
+ *    生成器没有释放（初始化失败或异常退出）时不提前释放，等租约自然过期
+ * REUSABLE_MILLIS由释放的节点按本地时钟计算，节点之间的时钟需要同步
+ *
+ * 本地以发出续租语句之前的时间计算租约，比数据库中的过期时间更早失效，
+ * 再预留LEASE_SAFETY_SECONDS秒抵消MODIFIED的秒级精度，以及maxBorrowSeconds秒给生成器借用的未来时间，
+ * 本地租约到期或id被接管后{@link #isWorkerIdValid()}返回false，生成器停止发号（缓存模式下环中已有的uid也不再发出），
+ * 数据库恢复后续租成功说明id仍归本节点所有，可以继续发号，被接管则不再恢复
+ */
+public class LeasingWorkerIdAssigner implements WorkerIdAssigner, InitializingBean, DisposableBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LeasingWorkerIdAssigner.class);
+
+    public static final String HEARTBEAT_NAME = "WorkerId-Lease-Heartbeat";
+
+    private static final long LEASE_SAFETY_SECONDS = 2L;
+
+    /**
+     * 接管过期id时与其它节点竞争失败的最多重试次数
+     */
+    private static final int MAX_CLAIM_ATTEMPTS = 8;
+
+    /**
+     * 接管时时钟落后REUSABLE_MILLIS不超过该值时等待时钟追上，否则不接管该id
+     */
+    private static final long MAX_REUSE_WAIT_MILLIS = 3000L;
+
+    @Autowired
+    private WorkerNodeDAO workerNodeDAO;
+
+    private long leaseSeconds = 60L;
+    private long heartbeatSeconds = 20L;
+
+    /**
+     * 生成器最多借用未来多少秒，本地租约相应提前失效
+     * 默认null即取允许上限 leaseSeconds - heartbeatSeconds - LEASE_SAFETY_SECONDS - 1 的一半，续租失败一次仍可以继续发号
+     */
+    private Long maxBorrowSeconds;
+    private long maxWorkerId = Long.MAX_VALUE;
+    private UidClock clock = new SystemUidClock();
+
+    private WorkerNodeEntity workerNode;
+    private ScheduledExecutorService heartbeat;
+
+    /**
+     * 最近一次成功续租前的System.nanoTime()
+     */
+    private volatile long leaseStartNanos;
+    private volatile boolean fenced = true;
+
+
+    public LeasingWorkerIdAssigner() {
+    }
+
+
+    public LeasingWorkerIdAssigner(WorkerNodeDAO workerNodeDAO) {
+        this.workerNodeDAO = workerNodeDAO;
+    }
+
+
+    /**
+     * 在Spring容器中创建时就校验租约配置，不必等到@Lazy的生成器第一次使用
+     */
+    @Override
+    public void afterPropertiesSet() {
+        this.checkLease();
+    }
+
+
+    private void checkLease() {
+        Assert.isTrue(heartbeatSeconds + LEASE_SAFETY_SECONDS < leaseSeconds,
+                "Heartbeat seconds must be less than lease seconds - " + LEASE_SAFETY_SECONDS);
+        Assert.isTrue(heartbeatSeconds + LEASE_SAFETY_SECONDS + getMaxBorrowSeconds() < leaseSeconds,
+                "Max borrow seconds must be less than lease seconds - heartbeat seconds - " + LEASE_SAFETY_SECONDS);
+    }
+
+
+    @Override
+    public synchronized long assignWorkerId() {
+        this.checkLease();
+        Assert.state(workerNode == null, "Worker id has been assigned: " + workerNode);
+
+        WorkerNodeEntity node = DisposableWorkerIdAssigner.buildWorkerNode();
+        long startNanos = System.nanoTime();
+        for (int attempt = 0; attempt < MAX_CLAIM_ATTEMPTS; attempt++) {
+            long maxReusableMillis = clock.currentMillis() + MAX_REUSE_WAIT_MILLIS;
+            WorkerNodeEntity expired = workerNodeDAO.getExpiredWorkerNode(leaseSeconds, maxWorkerId, maxReusableMillis);
+            if (expired == null) {
+                startNanos = System.nanoTime();
+                workerNodeDAO.addLeasedWorkerNode(node);
+                LOGGER.info("Add leased worker node: {}", node);
+                break;
+            }
+
+            node.setId(expired.getId());
+            node.setReusableMillis(expired.getReusableMillis());
+            startNanos = System.nanoTime();
+            if (workerNodeDAO.claimWorkerNode(node, leaseSeconds) == 1) {
+                LOGGER.info("Claim expired worker node: {}, previous owner {}:{}", node, expired.getHostName(), expired.getPort());
+                this.waitUntilReusable(node.getId(), expired.getReusableMillis());
+                break;
+            }
+            node.setId(null);
+            node.setReusableMillis(null);
+        }
+        if (node.getId() == null) {
+            throw new YahhUIDException("Failed to claim an expired worker id after %d attempts", MAX_CLAIM_ATTEMPTS);
+        }
+
+        this.workerNode = node;
+        this.leaseStartNanos = startNanos;
+        this.fenced = false;
+
+        heartbeat = Executors.newSingleThreadScheduledExecutor(new NamingThreadFactory(HEARTBEAT_NAME, true, null));
+        heartbeat.scheduleWithFixedDelay(this::renew, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+        return node.getId();
+    }
+
+
+    /**
+     * 等待时钟超过上一个节点发出的最大时间，被中断时放弃该id，租约过期后可以被再次接管
+     */
+    private void waitUntilReusable(long workerId, long reusableMillis) {
+        long waitMillis = reusableMillis - clock.currentMillis();
+        if (waitMillis > 0) {
+            LOGGER.info("Wait {} ms for worker id {} to be reusable", waitMillis, workerId);
+        }
+        while (waitMillis > 0) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(waitMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new YahhUIDException("Interrupted while waiting worker id %d to be reusable", workerId);
+            }
+            waitMillis = reusableMillis - clock.currentMillis();
+        }
+    }
+
+
+    /**
+     * 续租，数据库异常时只打日志，本地租约到期前还可以继续发号
+     */
+    private void renew() {
+        if (fenced) {
+            return;
+        }
+        long startNanos = System.nanoTime();
+        try {
+            if (workerNodeDAO.renewWorkerNode(workerNode.getId(), workerNode.getHostName(), workerNode.getPort()) == 1) {
+                leaseStartNanos = startNanos;
+                return;
+            }
+            fenced = true;
+            LOGGER.error("Worker id {} has been claimed by another node, stop generating uid", workerNode.getId());
+        } catch (Exception e) {
+            LOGGER.warn("Renew worker id {} lease exception, lease remains {} ms", workerNode.getId(),
+                    TimeUnit.NANOSECONDS.toMillis(getLeaseRemainingNanos()), e);
+        }
+    }
+
+
+    @Override
+    public boolean isWorkerIdValid() {
+        return !fenced && getLeaseRemainingNanos() > 0;
+    }
+
+
+    /**
+     * 本地租约的剩余时间，已经失效时小于等于0
+     */
+    public long getLeaseRemainingNanos() {
+        long leaseNanos = TimeUnit.SECONDS.toNanos(leaseSeconds - LEASE_SAFETY_SECONDS - getMaxBorrowSeconds());
+        return leaseNanos - (System.nanoTime() - leaseStartNanos);
+    }
+
+
+    /**
+     * 生成器关闭，之后不再发号，记录reusableMillis并立即释放租约
+     */
+    @Override
+    public synchronized void releaseWorkerId(long reusableMillis) {
+        if (heartbeat != null) {
+            heartbeat.shutdownNow();
+        }
+        if (workerNode == null || fenced) {
+            return;
+        }
+        fenced = true;
+        try {
+            workerNodeDAO.releaseWorkerNode(workerNode.getId(), workerNode.getHostName(), workerNode.getPort(),
+                    leaseSeconds + 1, reusableMillis);
+            LOGGER.info("Release worker node: {}, reusable after {}", workerNode, reusableMillis);
+        } catch (Exception e) {
+            LOGGER.warn("Release worker id {} exception, it can be claimed after the lease expires", workerNode.getId(), e);
+        }
+    }
+
+
+    /**
+     * 生成器没有通过releaseWorkerId告知已发出的最大时间时不提前释放，只停止续租，等租约过期
+     */
+    @Override
+    public synchronized void destroy() {
+        if (heartbeat != null) {
+            heartbeat.shutdownNow();
+        }
+        if (workerNode == null || fenced) {
+            return;
+        }
+        fenced = true;
+        LOGGER.info("Worker id {} was not released by the generator, it can be claimed after the lease expires", workerNode.getId());
+    }
+
+
+    public void setWorkerNodeDAO(WorkerNodeDAO workerNodeDAO) {
+        this.workerNodeDAO = workerNodeDAO;
+    }
+
+    public long getLeaseSeconds() {
+        return leaseSeconds;
+    }
+
+    public void setLeaseSeconds(long leaseSeconds) {
+        Assert.isTrue(leaseSeconds > LEASE_SAFETY_SECONDS, "Lease seconds must be greater than " + LEASE_SAFETY_SECONDS);
+        this.leaseSeconds = leaseSeconds;
+    }
+
+    public long getHeartbeatSeconds() {
+        return heartbeatSeconds;
+    }
+
+    public void setHeartbeatSeconds(long heartbeatSeconds) {
+        Assert.isTrue(heartbeatSeconds > 0, "Heartbeat seconds must be positive!");
+        this.heartbeatSeconds = heartbeatSeconds;
+    }
+
+    @Override
+    public Long getMaxBorrowSeconds() {
+        if (maxBorrowSeconds != null) {
+            return maxBorrowSeconds;
+        }
+        return Math.max(0L, (leaseSeconds - heartbeatSeconds - LEASE_SAFETY_SECONDS - 1) / 2);
+    }
+
+    /**
+     * 需要与生成器借用未来时间的上限一致，null表示使用默认值
+     */
+    public void setMaxBorrowSeconds(Long maxBorrowSeconds) {
+        Assert.isTrue(maxBorrowSeconds == null || maxBorrowSeconds >= 0, "Max borrow seconds can't be negative!");
+        this.maxBorrowSeconds = maxBorrowSeconds;
+    }
+
+    /**
+     * 只接管不超过maxWorkerId的id，一般为workerIdBits能表示的最大值
+     */
+    public void setMaxWorkerId(long maxWorkerId) {
+        Assert.isTrue(maxWorkerId > 0, "Max worker id must be positive!");
+        this.maxWorkerId = maxWorkerId;
+    }
+
+    public void setClock(UidClock clock) {
+        Assert.notNull(clock, "Clock can't be null!");
+        this.clock = clock;
+    }
+}
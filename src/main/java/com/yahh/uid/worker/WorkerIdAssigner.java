@@ -9,4 +9,27 @@ package com.yahh.uid.worker;
 public interface WorkerIdAssigner {
 
     long assignWorkerId();
+
+    /**
+     * 分配的workerId当前是否仍归本节点所有，返回false时生成器停止发号
+     * 默认一直有效，带租约的实现在租约过期或被其它节点接管后返回false
+     */
+    default boolean isWorkerIdValid() {
+        return true;
+    }
+
+    /**
+     * 使用该workerId时uid中的时间最多领先当前时间多少秒，生成器初始化时据此限制借用未来时间
+     * 默认null即不限制，workerId失效后可能被其它节点立即使用的实现需要限制，否则借用的时间会与新的持有者重复
+     */
+    default Long getMaxBorrowSeconds() {
+        return null;
+    }
+
+    /**
+     * 生成器关闭时回调
+     * @param reusableMillis 已发出的uid中的时间都早于该时间，workerId在此之后可以安全复用
+     */
+    default void releaseWorkerId(long reusableMillis) {
+    }
 }
@@ -0,0 +1,233 @@
+package com.yahh.uid.worker.dao;
+
+import com.yahh.uid.exception.YahhUIDException;
+import com.yahh.uid.worker.entity.WorkerNodeEntity;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.util.Assert;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+
+/**
+ * @author 邹磊
+ * @version 1.0
+ * @description: 只依赖DataSource的WorkerNodeDAO实现，语句与{@link WorkerNodeDAO}上的注解一致
+ * @date 2021/5/22 11:30
+ *
+ * 每个进程只在分配和续租workerId时访问WORKER_NODE表，不需要为此构建SqlSessionFactory与mapper代理，
+ * classpath中没有MyBatis时由自动装配使用
+ * 连接通过DataSourceUtils获取与释放，调用方处于Spring事务中时使用事务绑定的连接，由事务管理器提交；
+ * 不在事务中时每条语句单独获取连接，连接不是自动提交时在语句执行后提交
+ */
+public class JdbcWorkerNodeDAO implements WorkerNodeDAO {
+
+    private static final String COLUMNS = "ID, HOST_NAME, PORT, TYPE, LAUNCH_DATE, MODIFIED, CREATED";
+
+    private static final String SELECT_BY_HOST_PORT = "SELECT " + COLUMNS + " FROM WORKER_NODE"
+            + " WHERE HOST_NAME = ? AND PORT = ?";
+
+    private static final String INSERT = "INSERT INTO WORKER_NODE(HOST_NAME, PORT, TYPE, LAUNCH_DATE, MODIFIED, CREATED)"
+            + " VALUES (?, ?, ?, ?, NOW(), NOW())";
+
+    private static final String INSERT_LEASED = "INSERT INTO WORKER_NODE(HOST_NAME, PORT, TYPE, LAUNCH_DATE, REUSABLE_MILLIS, MODIFIED, CREATED)"
+            + " VALUES (?, ?, ?, ?, 0, NOW(), NOW())";
+
+    private static final String SELECT_EXPIRED = "SELECT " + COLUMNS + ", REUSABLE_MILLIS FROM WORKER_NODE"
+            + " WHERE ID <= ? AND REUSABLE_MILLIS <= ? AND MODIFIED < DATE_SUB(NOW(), INTERVAL ? SECOND) ORDER BY ID LIMIT 1";
+
+    private static final String CLAIM = "UPDATE WORKER_NODE SET HOST_NAME = ?, PORT = ?, TYPE = ?, LAUNCH_DATE = ?, MODIFIED = NOW()"
+            + " WHERE ID = ? AND REUSABLE_MILLIS = ? AND MODIFIED < DATE_SUB(NOW(), INTERVAL ? SECOND)";
+
+    private static final String RENEW = "UPDATE WORKER_NODE SET MODIFIED = NOW()"
+            + " WHERE ID = ? AND HOST_NAME = ? AND PORT = ?";
+
+    private static final String RELEASE = "UPDATE WORKER_NODE SET MODIFIED = DATE_SUB(NOW(), INTERVAL ? SECOND), REUSABLE_MILLIS = ?"
+            + " WHERE ID = ? AND HOST_NAME = ? AND PORT = ?";
+
+    private final DataSource dataSource;
+
+
+    public JdbcWorkerNodeDAO(DataSource dataSource) {
+        Assert.notNull(dataSource, "DataSource can't be null!");
+        this.dataSource = dataSource;
+    }
+
+
+    @Override
+    public WorkerNodeEntity getWorkerNodeByHostPort(String host, String port) {
+        Connection connection = this.getConnection();
+        try (PreparedStatement statement = connection.prepareStatement(SELECT_BY_HOST_PORT)) {
+            statement.setString(1, host);
+            statement.setString(2, port);
+            return this.queryOne(statement, false);
+        } catch (SQLException e) {
+            throw new YahhUIDException("Query worker node by host port exception", e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+
+    @Override
+    public void addWorkerNode(WorkerNodeEntity workerNodeEntity) {
+        this.insert(INSERT, workerNodeEntity);
+    }
+
+
+    @Override
+    public void addLeasedWorkerNode(WorkerNodeEntity workerNodeEntity) {
+        this.insert(INSERT_LEASED, workerNodeEntity);
+    }
+
+
+    private void insert(String sql, WorkerNodeEntity workerNodeEntity) {
+        Connection connection = this.getConnection();
+        try (PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            statement.setString(1, workerNodeEntity.getHostName());
+            statement.setString(2, workerNodeEntity.getPort());
+            statement.setInt(3, workerNodeEntity.getType());
+            statement.setTimestamp(4, new Timestamp(workerNodeEntity.getLaunchDate().getTime()));
+            statement.executeUpdate();
+            try (ResultSet keys = statement.getGeneratedKeys()) {
+                if (!keys.next()) {
+                    throw new YahhUIDException("No generated id returned when adding worker node");
+                }
+                workerNodeEntity.setId(keys.getLong(1));
+            }
+            this.commit(connection);
+        } catch (SQLException e) {
+            throw new YahhUIDException("Add worker node exception", e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+
+    @Override
+    public WorkerNodeEntity getExpiredWorkerNode(long leaseSeconds, long maxWorkerId, long maxReusableMillis) {
+        Connection connection = this.getConnection();
+        try (PreparedStatement statement = connection.prepareStatement(SELECT_EXPIRED)) {
+            statement.setLong(1, maxWorkerId);
+            statement.setLong(2, maxReusableMillis);
+            statement.setLong(3, leaseSeconds);
+            return this.queryOne(statement, true);
+        } catch (SQLException e) {
+            throw new YahhUIDException("Query expired worker node exception", e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+
+    @Override
+    public int claimWorkerNode(WorkerNodeEntity workerNodeEntity, long leaseSeconds) {
+        Connection connection = this.getConnection();
+        try (PreparedStatement statement = connection.prepareStatement(CLAIM)) {
+            statement.setString(1, workerNodeEntity.getHostName());
+            statement.setString(2, workerNodeEntity.getPort());
+            statement.setInt(3, workerNodeEntity.getType());
+            statement.setTimestamp(4, new Timestamp(workerNodeEntity.getLaunchDate().getTime()));
+            statement.setLong(5, workerNodeEntity.getId());
+            statement.setLong(6, workerNodeEntity.getReusableMillis());
+            statement.setLong(7, leaseSeconds);
+            return update(connection, statement);
+        } catch (SQLException e) {
+            throw new YahhUIDException("Claim worker node exception", e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+
+    @Override
+    public int renewWorkerNode(long id, String host, String port) {
+        Connection connection = this.getConnection();
+        try (PreparedStatement statement = connection.prepareStatement(RENEW)) {
+            statement.setLong(1, id);
+            statement.setString(2, host);
+            statement.setString(3, port);
+            return update(connection, statement);
+        } catch (SQLException e) {
+            throw new YahhUIDException("Renew worker node exception", e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+
+    @Override
+    public int releaseWorkerNode(long id, String host, String port, long expiredSeconds, long reusableMillis) {
+        Connection connection = this.getConnection();
+        try (PreparedStatement statement = connection.prepareStatement(RELEASE)) {
+            statement.setLong(1, expiredSeconds);
+            statement.setLong(2, reusableMillis);
+            statement.setLong(3, id);
+            statement.setString(4, host);
+            statement.setString(5, port);
+            return update(connection, statement);
+        } catch (SQLException e) {
+            throw new YahhUIDException("Release worker node exception", e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+
+    /**
+     * @param leased 是否查询了REUSABLE_MILLIS，只有租约相关的语句查询该列，disposable模式不要求表中有该列
+     */
+    private WorkerNodeEntity queryOne(PreparedStatement statement, boolean leased) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery()) {
+            if (!resultSet.next()) {
+                return null;
+            }
+            WorkerNodeEntity workerNodeEntity = new WorkerNodeEntity();
+            workerNodeEntity.setId(resultSet.getLong("ID"));
+            workerNodeEntity.setHostName(resultSet.getString("HOST_NAME"));
+            workerNodeEntity.setPort(resultSet.getString("PORT"));
+            workerNodeEntity.setType(resultSet.getInt("TYPE"));
+            workerNodeEntity.setLaunchDateDate(resultSet.getTimestamp("LAUNCH_DATE"));
+            workerNodeEntity.setModified(resultSet.getTimestamp("MODIFIED"));
+            workerNodeEntity.setCreated(resultSet.getTimestamp("CREATED"));
+            if (leased) {
+                workerNodeEntity.setReusableMillis(resultSet.getLong("REUSABLE_MILLIS"));
+            }
+            return workerNodeEntity;
+        }
+    }
+
+
+    /**
+     * 在Spring事务中时获取事务绑定的连接，否则从DataSource获取新的连接
+     */
+    private Connection getConnection() {
+        try {
+            return DataSourceUtils.getConnection(dataSource);
+        } catch (CannotGetJdbcConnectionException e) {
+            throw new YahhUIDException("Get connection exception", e);
+        }
+    }
+
+
+    private int update(Connection connection, PreparedStatement statement) throws SQLException {
+        int rows = statement.executeUpdate();
+        this.commit(connection);
+        return rows;
+    }
+
+
+    /**
+     * 事务绑定的连接由事务管理器提交，其它连接不是自动提交时在语句执行后提交
+     */
+    private void commit(Connection connection) throws SQLException {
+        if (!DataSourceUtils.isConnectionTransactional(connection, dataSource) && !connection.getAutoCommit()) {
+            connection.commit();
+        }
+    }
+}
@@ -5,6 +5,7 @@ import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Options;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 import org.springframework.stereotype.Repository;
 
 /**
@@ -47,4 +48,89 @@ public interface WorkerNodeDAO {
             "NOW())")
     @Options(useGeneratedKeys = true, keyProperty = "id", keyColumn = "id")
     void addWorkerNode(WorkerNodeEntity workerNodeEntity);
+
+
+    /**
+     * 插入一行以租约方式分配的id，REUSABLE_MILLIS不为null标记该行可以在租约过期后被接管，
+     * {@link #addWorkerNode(WorkerNodeEntity)}插入的行REUSABLE_MILLIS为null，不会被接管
+     */
+    @Insert("INSERT INTO WORKER_NODE" +
+            "(HOST_NAME," +
+            "PORT," +
+            "TYPE," +
+            "LAUNCH_DATE," +
+            "REUSABLE_MILLIS," +
+            "MODIFIED," +
+            "CREATED)" +
+            "VALUES (" +
+            "#{hostName}," +
+            "#{port}," +
+            "#{type}," +
+            "#{launchDate}," +
+            "0," +
+            "NOW()," +
+            "NOW())")
+    @Options(useGeneratedKeys = true, keyProperty = "id", keyColumn = "id")
+    void addLeasedWorkerNode(WorkerNodeEntity workerNodeEntity);
+
+
+    /**
+     * 查询以租约方式分配、租约已过期（MODIFIED早于leaseSeconds秒之前）且不超过maxWorkerId的最小id
+     * REUSABLE_MILLIS晚于maxReusableMillis的id暂时不能复用，REUSABLE_MILLIS为null的行不满足条件
+     */
+    @Select("SELECT " +
+                   " ID," +
+                   " HOST_NAME," +
+                   " PORT," +
+                   " TYPE," +
+                   " LAUNCH_DATE," +
+                   " REUSABLE_MILLIS," +
+                   " MODIFIED," +
+                   " CREATED" +
+                   " FROM" +
+                   " WORKER_NODE" +
+                   " WHERE" +
+                   " ID <= #{maxWorkerId} AND REUSABLE_MILLIS <= #{maxReusableMillis}" +
+                   " AND MODIFIED < DATE_SUB(NOW(), INTERVAL #{leaseSeconds} SECOND)" +
+                   " ORDER BY ID LIMIT 1")
+    WorkerNodeEntity getExpiredWorkerNode(@Param("leaseSeconds") long leaseSeconds, @Param("maxWorkerId") long maxWorkerId,
+                                          @Param("maxReusableMillis") long maxReusableMillis);
+
+
+    /**
+     * 接管一个租约已过期的id，条件中再次判断过期，并发接管时只有一个节点更新成功
+     * REUSABLE_MILLIS需要与查询到的一致，查询之后被释放时接管失败，重新查询；
+     * 不修改REUSABLE_MILLIS，接管后未正常释放时下一个节点仍按之前的时间等待
+     * @return 更新的行数，1表示接管成功
+     */
+    @Update("UPDATE WORKER_NODE SET" +
+            " HOST_NAME = #{node.hostName}," +
+            " PORT = #{node.port}," +
+            " TYPE = #{node.type}," +
+            " LAUNCH_DATE = #{node.launchDate}," +
+            " MODIFIED = NOW()" +
+            " WHERE" +
+            " ID = #{node.id} AND REUSABLE_MILLIS = #{node.reusableMillis}" +
+            " AND MODIFIED < DATE_SUB(NOW(), INTERVAL #{leaseSeconds} SECOND)")
+    int claimWorkerNode(@Param("node") WorkerNodeEntity workerNodeEntity, @Param("leaseSeconds") long leaseSeconds);
+
+
+    /**
+     * 续租，id已被其它节点接管时更新0行
+     */
+    @Update("UPDATE WORKER_NODE SET MODIFIED = NOW()" +
+            " WHERE" +
+            " ID = #{id} AND HOST_NAME = #{host,jdbcType=VARCHAR} AND PORT = #{port,jdbcType=VARCHAR}")
+    int renewWorkerNode(@Param("id") long id, @Param("host") String host, @Param("port") String port);
+
+
+    /**
+     * 释放租约，把MODIFIED改到过期时间之前，其它节点可以立即接管，接管后等到reusableMillis之后才能发号
+     */
+    @Update("UPDATE WORKER_NODE SET MODIFIED = DATE_SUB(NOW(), INTERVAL #{expiredSeconds} SECOND)," +
+            " REUSABLE_MILLIS = #{reusableMillis}" +
+            " WHERE" +
+            " ID = #{id} AND HOST_NAME = #{host,jdbcType=VARCHAR} AND PORT = #{port,jdbcType=VARCHAR}")
+    int releaseWorkerNode(@Param("id") long id, @Param("host") String host, @Param("port") String port,
+                          @Param("expiredSeconds") long expiredSeconds, @Param("reusableMillis") long reusableMillis);
 }
@@ -35,6 +35,11 @@ public class WorkerNodeEntity {
      */
     private Date launchDate = new Date();
 
+    /**
+     * 租约方式分配的id在此之后可以复用，其它分配方式为null
+     */
+    private Long reusableMillis;
+
     /**
      * Created time
      */
@@ -85,6 +90,14 @@ public class WorkerNodeEntity {
         this.launchDate = launchDate;
     }
 
+    public Long getReusableMillis() {
+        return reusableMillis;
+    }
+
+    public void setReusableMillis(Long reusableMillis) {
+        this.reusableMillis = reusableMillis;
+    }
+
     public Date getCreated() {
         return created;
     }
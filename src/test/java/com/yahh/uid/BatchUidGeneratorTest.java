@@ -0,0 +1,108 @@
+package com.yahh.uid;
+
+import com.yahh.uid.impl.CachedUidGenerator;
+import com.yahh.uid.impl.DefaultUidGenerator;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 测试批量获取uid，workerId固定为1，不依赖数据库
+ */
+public class BatchUidGeneratorTest {
+
+    /**
+     * 一次CAS预占一段连续的序列号，批量取到的uid依次加1
+     */
+    @Test
+    public void testFillReservesContiguousSequence() throws Exception {
+        DefaultUidGenerator uidGenerator = new DefaultUidGenerator();
+        uidGenerator.setWorkerIdAssigner(() -> 1L);
+        uidGenerator.afterPropertiesSet();
+        try {
+            long[] uids = uidGenerator.getUIDs(100);
+            for (int i = 1; i < uids.length; i++) {
+                Assert.assertEquals(uids[0] + i, uids[i]);
+            }
+            Assert.assertTrue(uidGenerator.getUID() > uids[uids.length - 1]);
+        } finally {
+            uidGenerator.destroy();
+        }
+    }
+
+    /**
+     * 批量获取与单个获取同时进行，uid不重复
+     */
+    @Test
+    public void testParallelFillUnique() throws Exception {
+        DefaultUidGenerator uidGenerator = new DefaultUidGenerator();
+        uidGenerator.setTimeBits(28);
+        uidGenerator.setWorkerIdBits(16);
+        uidGenerator.setSeqBits(19);
+        uidGenerator.setWorkerIdAssigner(() -> 1L);
+        uidGenerator.afterPropertiesSet();
+
+        int threads = 4;
+        int perThread = 50_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<long[]>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                boolean batch = t % 2 == 0;
+                results.add(pool.submit(() -> {
+                    long[] uids = new long[perThread];
+                    if (batch) {
+                        long[] dest = new long[100];
+                        for (int i = 0; i < perThread; i += dest.length) {
+                            uidGenerator.fill(dest);
+                            System.arraycopy(dest, 0, uids, i, dest.length);
+                        }
+                    } else {
+                        for (int i = 0; i < perThread; i++) {
+                            uids[i] = uidGenerator.getUID();
+                        }
+                    }
+                    return uids;
+                }));
+            }
+
+            Set<Long> uids = new HashSet<>();
+            for (Future<long[]> result : results) {
+                for (long uid : result.get(60, TimeUnit.SECONDS)) {
+                    Assert.assertTrue("Duplicated uid " + uid, uids.add(uid));
+                }
+            }
+            Assert.assertEquals(threads * perThread, uids.size());
+        } finally {
+            pool.shutdownNow();
+            uidGenerator.destroy();
+        }
+    }
+
+    /**
+     * CachedUidGenerator批量从RingBuffer中取出，与单个获取的uid不重复
+     */
+    @Test
+    public void testCachedFill() throws Exception {
+        CachedUidGenerator uidGenerator = new CachedUidGenerator();
+        uidGenerator.setWorkerIdAssigner(() -> 1L);
+        uidGenerator.afterPropertiesSet();
+        try {
+            Set<Long> uids = new HashSet<>();
+            for (long uid : uidGenerator.getUIDs(1000)) {
+                Assert.assertTrue("Duplicated uid " + uid, uids.add(uid));
+            }
+            Assert.assertTrue(uids.add(uidGenerator.getUID()));
+        } finally {
+            uidGenerator.destroy();
+        }
+    }
+}
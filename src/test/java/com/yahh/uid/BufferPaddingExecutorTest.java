@@ -0,0 +1,385 @@
+package com.yahh.uid;
+
+import com.yahh.uid.buffer.BufferPaddingExecutor;
+import com.yahh.uid.buffer.BufferedUidRangeProvider;
+import com.yahh.uid.buffer.RingBuffer;
+import com.yahh.uid.clock.ManualUidClock;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 测试BufferPaddingExecutor按区间填充RingBuffer，provider为第s秒提供 s * SECOND_SPAN 开始的uid
+ * 环满时只放入每秒的一个前缀，据此检查uid是否丢失
+ */
+public class BufferPaddingExecutorTest {
+
+    private static final long SECOND_SPAN = 1_000_000L;
+
+    /**
+     * 每秒的uid分几段提供，环满时停止填充，环中是从第一秒开始的连续uid
+     */
+    @Test
+    public void testRangeProviderFillsRing() {
+        RingBuffer ringBuffer = new RingBuffer(64, 1);
+        ringBuffer.setRejectedPutHandler((buffer, uid) -> { });
+        List<Long> seconds = new ArrayList<>();
+        BufferPaddingExecutor executor = new BufferPaddingExecutor(ringBuffer, (second, consumer) -> {
+            seconds.add(second);
+            return consumer.accept(second * SECOND_SPAN, 10) && consumer.accept(second * SECOND_SPAN + 10, 10);
+        }, false);
+        try {
+            executor.paddingBuffer();
+
+            long firstSecond = seconds.get(0);
+            Assert.assertEquals(4, seconds.size());
+            long[] dest = new long[64];
+            Assert.assertEquals(64, ringBuffer.take(dest, 0, dest.length));
+            for (int i = 0; i < dest.length; i++) {
+                Assert.assertEquals((firstSecond + i / 20) * SECOND_SPAN + i % 20, dest[i]);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 旧的列表provider中连续的uid合并为一个区间，consumer拒绝后不再提供
+     */
+    @Test
+    public void testListProviderMergedIntoRanges() {
+        BufferedUidRangeProvider provider = BufferedUidRangeProvider.of(second -> Arrays.asList(1L, 2L, 3L, 7L, 8L, 10L));
+
+        List<String> ranges = new ArrayList<>();
+        Assert.assertTrue(provider.provide(0L, (firstUid, count) -> ranges.add(firstUid + "+" + count)));
+        Assert.assertEquals(Arrays.asList("1+3", "7+2", "10+1"), ranges);
+
+        ranges.clear();
+        Assert.assertFalse(provider.provide(0L, (firstUid, count) -> ranges.add(firstUid + "+" + count) && firstUid < 7));
+        Assert.assertEquals(Arrays.asList("1+3", "7+2"), ranges);
+    }
+
+    /**
+     * 已有填充请求在排队或执行时，重复的asyncPadding不再提交新的填充
+     */
+    @Test
+    public void testAsyncPaddingCoalesced() throws Exception {
+        RingBuffer ringBuffer = new RingBuffer(64, 1);
+        ringBuffer.setRejectedPutHandler((buffer, uid) -> { });
+        CountDownLatch release = new CountDownLatch(1);
+        BufferPaddingExecutor executor = new BufferPaddingExecutor(ringBuffer, (second, consumer) -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            return consumer.accept(second * SECOND_SPAN, 20);
+        }, false);
+        try {
+            for (int i = 0; i < 100; i++) {
+                executor.asyncPadding();
+            }
+            release.countDown();
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (ringBuffer.getTail() < 63 && System.nanoTime() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(1);
+            }
+            TimeUnit.MILLISECONDS.sleep(50);
+            Assert.assertEquals(1L, executor.getPaddingCount());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 获取过程中扩容，旧环取空后调用方转到新环，uid不丢失也不重复
+     */
+    @Test
+    public void testResizeHandOffKeepsUids() throws Exception {
+        RingBuffer first = new RingBuffer(64);
+        first.setRejectedPutHandler((buffer, uid) -> { });
+        AtomicBoolean producing = new AtomicBoolean(true);
+        BufferPaddingExecutor executor = new BufferPaddingExecutor(first, provider(10_000, producing), false,
+                new ManualUidClock(), TimeUnit.SECONDS);
+        first.setBufferPaddingExecutor(executor);
+
+        AtomicReference<RingBuffer> current = new AtomicReference<>(first);
+        AtomicInteger maxBufferSize = new AtomicInteger();
+        executor.setAdaptiveSizing(64, 4096, resized -> {
+            current.set(resized);
+            maxBufferSize.accumulateAndGet(resized.getBufferSize(), Math::max);
+        });
+        executor.paddingBuffer();
+
+        int threads = 4;
+        int perThread = 50_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<List<Long>>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                // 一半线程一直持有最初的环，只能通过successor取到新环中的uid
+                boolean stale = t % 2 == 0;
+                results.add(pool.submit(() -> {
+                    List<Long> taken = new ArrayList<>(perThread);
+                    while (taken.size() < perThread) {
+                        long uid = (stale ? first : current.get()).poll();
+                        if (uid == RingBuffer.EMPTY_UID) {
+                            Thread.yield();
+                        } else {
+                            taken.add(uid);
+                        }
+                    }
+                    return taken;
+                }));
+            }
+
+            Set<Long> uids = new HashSet<>();
+            for (Future<List<Long>> result : results) {
+                for (long uid : result.get(60, TimeUnit.SECONDS)) {
+                    Assert.assertTrue("Duplicated uid " + uid, uids.add(uid));
+                }
+            }
+
+            // 停止提供uid后取出所有环中剩余的uid
+            producing.set(false);
+            while (executor.isRunning()) {
+                Thread.yield();
+            }
+            for (long uid = first.poll(); uid != RingBuffer.EMPTY_UID; uid = first.poll()) {
+                Assert.assertTrue("Duplicated uid " + uid, uids.add(uid));
+            }
+
+            Assert.assertTrue(executor.getResizeCount() > 0);
+            // 停止获取后会缩容回下限，这里检查获取过程中扩容过
+            Assert.assertTrue(maxBufferSize.get() > 64);
+            assertPrefixPerSecond(uids);
+        } finally {
+            pool.shutdownNow();
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 开启预测填充后按获取速率预计取空前提前填充，不需要等到低于paddingFactor
+     */
+    @Test
+    public void testPredictivePadding() throws Exception {
+        RingBuffer ringBuffer = new RingBuffer(1024, 1);
+        ringBuffer.setRejectedPutHandler((buffer, uid) -> { });
+        BufferPaddingExecutor executor = new BufferPaddingExecutor(ringBuffer, provider(10_000, new AtomicBoolean(true)), false,
+                new ManualUidClock(), TimeUnit.SECONDS);
+        ringBuffer.setBufferPaddingExecutor(executor);
+        executor.setPaddingHeadroom(TimeUnit.SECONDS.toMillis(10));
+        try {
+            executor.paddingBuffer();
+            executor.start();
+
+            long[] dest = new long[10];
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (executor.getPredictivePaddingCount() == 0 && System.nanoTime() < deadline) {
+                ringBuffer.poll(dest, 0, dest.length);
+                TimeUnit.MILLISECONDS.sleep(1);
+            }
+
+            Assert.assertTrue(executor.getPredictivePaddingCount() > 0);
+            Assert.assertTrue(ringBuffer.getTakeRate() > 0);
+            Assert.assertTrue(ringBuffer.getMillisToEmpty() < Long.MAX_VALUE);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 多次填充只使用同一个填充线程，shutdown后线程退出，不再接受填充请求
+     */
+    @Test
+    public void testSinglePadderThread() throws Exception {
+        RingBuffer ringBuffer = new RingBuffer(64);
+        ringBuffer.setRejectedPutHandler((buffer, uid) -> { });
+        BufferPaddingExecutor executor = new BufferPaddingExecutor(ringBuffer, provider(20, new AtomicBoolean(true)), false,
+                new ManualUidClock(), TimeUnit.SECONDS);
+        ringBuffer.setBufferPaddingExecutor(executor);
+        List<Thread> padders = new CopyOnWriteArrayList<>();
+        executor.setPadderThreadFactory(runnable -> {
+            Thread thread = new Thread(runnable, BufferPaddingExecutor.WORKER_NAME);
+            thread.setDaemon(true);
+            padders.add(thread);
+            return thread;
+        });
+
+        executor.paddingBuffer();
+        for (int round = 0; round < 5; round++) {
+            // 取到低于paddingThreshold，触发异步填充，等待环重新填满
+            // 上一次填充还没结束时的请求会被合并，所以等待期间继续请求填充
+            long[] dest = new long[40];
+            Assert.assertEquals(40, ringBuffer.poll(dest, 0, dest.length));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (ringBuffer.getAvailable() < 40 && System.nanoTime() < deadline) {
+                executor.asyncPadding();
+                TimeUnit.MILLISECONDS.sleep(1);
+            }
+            Assert.assertTrue(ringBuffer.getAvailable() >= 40);
+        }
+        // 一次填充可能跨过两轮（上一轮的请求还在填充时下一轮已经取走），所以只要求填充了多次
+        Assert.assertTrue(executor.getPaddingCount() > 1);
+        Assert.assertEquals(1, padders.size());
+
+        executor.shutdown();
+        padders.get(0).join(TimeUnit.SECONDS.toMillis(5));
+        Assert.assertFalse(padders.get(0).isAlive());
+        try {
+            executor.asyncPadding();
+            Assert.fail("Padding after shutdown should be rejected");
+        } catch (RejectedExecutionException e) {
+            Assert.assertEquals(1, padders.size());
+        }
+    }
+
+    /**
+     * 借用达到上限后填充暂停，时钟前进一秒后填充线程继续填充一秒
+     */
+    @Test
+    public void testBorrowLimitThrottlesPadding() throws Exception {
+        ManualUidClock clock = new ManualUidClock(TimeUnit.SECONDS.toMillis(1_000_000L));
+        RingBuffer ringBuffer = new RingBuffer(1024);
+        ringBuffer.setRejectedPutHandler((buffer, uid) -> { });
+        BufferPaddingExecutor executor = new BufferPaddingExecutor(ringBuffer, provider(10, new AtomicBoolean(true)), false,
+                clock, TimeUnit.SECONDS);
+        ringBuffer.setBufferPaddingExecutor(executor);
+        executor.setMaxBorrowSeconds(2);
+        try {
+            executor.paddingBuffer();
+            Assert.assertEquals(30L, ringBuffer.getAvailable());
+            Assert.assertEquals(1L, executor.getThrottledCount());
+            Assert.assertEquals(2L, executor.getDrift(TimeUnit.SECONDS));
+
+            // 低于paddingThreshold触发异步填充，被限制后填充线程等待时钟前进
+            Assert.assertNotEquals(RingBuffer.EMPTY_UID, ringBuffer.poll());
+            TimeUnit.MILLISECONDS.sleep(50);
+            Assert.assertEquals(29L, ringBuffer.getAvailable());
+
+            clock.advance(1, TimeUnit.SECONDS);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (ringBuffer.getAvailable() != 39L && System.nanoTime() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(1);
+            }
+            TimeUnit.MILLISECONDS.sleep(50);
+            Assert.assertEquals(39L, ringBuffer.getAvailable());
+            Assert.assertEquals(2L, executor.getDrift(TimeUnit.SECONDS));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 每次填充都以环满结束，这不计入rejectedPutCount，环满后再放入才计数
+     */
+    @Test
+    public void testRefillEndNotCountedAsRejectedPut() {
+        RingBuffer ringBuffer = new RingBuffer(64);
+        BufferPaddingExecutor executor = new BufferPaddingExecutor(ringBuffer, provider(10_000, new AtomicBoolean(true)), false,
+                new ManualUidClock(), TimeUnit.SECONDS);
+        try {
+            executor.paddingBuffer();
+            Assert.assertEquals(64L, ringBuffer.getAvailable());
+            Assert.assertEquals(0L, ringBuffer.getRejectedPutCount());
+
+            ringBuffer.setRejectedPutHandler((buffer, uid) -> { });
+            Assert.assertFalse(ringBuffer.put(42L));
+            Assert.assertEquals(1L, ringBuffer.getRejectedPutCount());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 扩容后第一次提供uid就抛出异常时恢复旧环，之后的填充仍然放入调用方持有的环
+     */
+    @Test
+    public void testResizeRollbackWhenProviderThrows() {
+        RingBuffer ringBuffer = new RingBuffer(64, 1);
+        ringBuffer.setRejectedPutHandler((buffer, uid) -> { });
+        AtomicBoolean failing = new AtomicBoolean();
+        BufferedUidRangeProvider provider = provider(10_000, new AtomicBoolean(true));
+        BufferPaddingExecutor executor = new BufferPaddingExecutor(ringBuffer, (second, consumer) -> {
+            if (failing.get()) {
+                throw new IllegalStateException("Provider failed");
+            }
+            return provider.provide(second, consumer);
+        }, false, new ManualUidClock(), TimeUnit.SECONDS);
+        List<RingBuffer> published = new ArrayList<>();
+        executor.setAdaptiveSizing(64, 4096, published::add);
+        try {
+            executor.paddingBuffer();
+            long[] dest = new long[64];
+            Assert.assertEquals(64, ringBuffer.take(dest, 0, dest.length));
+
+            // 取空后填充会扩容，新环发布之前provider抛出异常
+            failing.set(true);
+            try {
+                executor.paddingBuffer();
+                Assert.fail("Provider exception expected");
+            } catch (IllegalStateException e) {
+                Assert.assertEquals("Provider failed", e.getMessage());
+            }
+            Assert.assertTrue(published.isEmpty());
+            Assert.assertEquals(0L, executor.getResizeCount());
+            Assert.assertFalse(executor.isRunning());
+
+            failing.set(false);
+            executor.paddingBuffer();
+            Assert.assertTrue(ringBuffer.getAvailable() > 0);
+            Assert.assertNotEquals(RingBuffer.EMPTY_UID, ringBuffer.poll());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 每秒提供perSecond个uid，每段100个，producing为false时停止提供
+     */
+    private static BufferedUidRangeProvider provider(int perSecond, AtomicBoolean producing) {
+        return (second, consumer) -> {
+            for (int offset = 0; offset < perSecond; offset += 100) {
+                if (!producing.get() || !consumer.accept(second * SECOND_SPAN + offset, Math.min(100, perSecond - offset))) {
+                    return false;
+                }
+            }
+            return true;
+        };
+    }
+
+    /**
+     * 环满时只会放弃每秒末尾的一段，所以每秒取到的uid必须是从0开始的连续序列
+     */
+    private static void assertPrefixPerSecond(Set<Long> uids) {
+        Map<Long, TreeSet<Long>> offsets = new HashMap<>();
+        for (long uid : uids) {
+            offsets.computeIfAbsent(uid / SECOND_SPAN, second -> new TreeSet<>()).add(uid % SECOND_SPAN);
+        }
+        for (Map.Entry<Long, TreeSet<Long>> entry : offsets.entrySet()) {
+            TreeSet<Long> secondOffsets = entry.getValue();
+            Assert.assertEquals("Lost uid in second " + entry.getKey(), secondOffsets.size() - 1, secondOffsets.last().longValue());
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.yahh.uid;
+
+import com.yahh.uid.clock.ManualUidClock;
+import com.yahh.uid.impl.DefaultUidGenerator;
+import com.yahh.uid.worker.CachingWorkerIdAssigner;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 测试本地缓存workerId，使用计数器代替数据库分配
+ */
+public class CachingWorkerIdAssignerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicLong assigned = new AtomicLong();
+    private ManualUidClock clock;
+    private File cacheFile;
+
+    @Before
+    public void setUp() {
+        clock = new ManualUidClock(System.currentTimeMillis());
+        cacheFile = new File(folder.getRoot(), "uid/worker-id.properties");
+    }
+
+    /**
+     * 正常关闭后重启复用缓存的id，不再调用数据库
+     */
+    @Test
+    public void testReuseAfterCleanShutdown() throws Exception {
+        CachingWorkerIdAssigner first = newAssigner();
+        Assert.assertEquals(1L, first.assignWorkerId());
+        first.releaseWorkerId(clock.currentMillis());
+        first.destroy();
+
+        CachingWorkerIdAssigner second = newAssigner();
+        Assert.assertEquals(1L, second.assignWorkerId());
+        Assert.assertEquals(1L, assigned.get());
+        second.destroy();
+    }
+
+    /**
+     * 异常退出（未调用releaseWorkerId）后重新分配
+     */
+    @Test
+    public void testReassignAfterCrash() throws Exception {
+        newAssigner().assignWorkerId();
+
+        CachingWorkerIdAssigner second = newAssigner();
+        Assert.assertEquals(2L, second.assignWorkerId());
+        second.destroy();
+    }
+
+    /**
+     * 缓存文件属于其它机器时重新分配
+     */
+    @Test
+    public void testReassignOnOtherHost() throws Exception {
+        CachingWorkerIdAssigner first = newAssigner();
+        first.assignWorkerId();
+        first.releaseWorkerId(clock.currentMillis());
+        first.destroy();
+
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(cacheFile)) {
+            properties.load(in);
+        }
+        properties.setProperty("host", "10.255.255.1");
+        try (OutputStream out = new FileOutputStream(cacheFile)) {
+            properties.store(out, null);
+        }
+
+        Assert.assertEquals(2L, newAssigner().assignWorkerId());
+    }
+
+    /**
+     * 时钟远远落后于上次发出的uid时重新分配
+     */
+    @Test
+    public void testReassignWhenClockBehind() throws Exception {
+        CachingWorkerIdAssigner first = newAssigner();
+        first.assignWorkerId();
+        first.releaseWorkerId(clock.currentMillis() + TimeUnit.MINUTES.toMillis(1));
+        first.destroy();
+
+        Assert.assertEquals(2L, newAssigner().assignWorkerId());
+    }
+
+    /**
+     * 文件被其它实例持有时不复用也不写入
+     */
+    @Test
+    public void testLockedByAnotherInstance() throws Exception {
+        CachingWorkerIdAssigner first = newAssigner();
+        first.assignWorkerId();
+
+        CachingWorkerIdAssigner second = newAssigner();
+        Assert.assertEquals(2L, second.assignWorkerId());
+        Assert.assertNull(second.getWorkerId());
+        first.destroy();
+    }
+
+    /**
+     * 生成器关闭时记录已发出的最大时间
+     */
+    @Test
+    public void testGeneratorReleasesOnDestroy() throws Exception {
+        CachingWorkerIdAssigner assigner = newAssigner();
+        DefaultUidGenerator uidGenerator = new DefaultUidGenerator();
+        uidGenerator.setWorkerIdAssigner(assigner);
+        uidGenerator.setClock(clock);
+        uidGenerator.afterPropertiesSet();
+        uidGenerator.getUID();
+        uidGenerator.destroy();
+        assigner.destroy();
+
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(cacheFile)) {
+            properties.load(in);
+        }
+        Assert.assertEquals("true", properties.getProperty("clean"));
+        Assert.assertEquals(TimeUnit.SECONDS.toMillis(clock.currentSecond() + 1),
+                Long.parseLong(properties.getProperty("reusableMillis")));
+    }
+
+    private CachingWorkerIdAssigner newAssigner() {
+        CachingWorkerIdAssigner assigner = new CachingWorkerIdAssigner(assigned::incrementAndGet, cacheFile);
+        assigner.setClock(clock);
+        return assigner;
+    }
+}
@@ -0,0 +1,220 @@
+package com.yahh.uid;
+
+import com.yahh.uid.clock.ManualUidClock;
+import com.yahh.uid.exception.YahhUIDException;
+import com.yahh.uid.impl.CachedUidGenerator;
+import com.yahh.uid.worker.FileLockWorkerIdAssigner;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 在临时目录中测试文件锁分配workerId，同一个JVM中的多个实例相当于多个进程
+ */
+public class FileLockWorkerIdAssignerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * 依次锁住最小的空闲id，持有期间id有效
+     */
+    @Test
+    public void testLockLowestFreeId() throws Exception {
+        File directory = folder.newFolder("uid");
+        FileLockWorkerIdAssigner first = new FileLockWorkerIdAssigner(directory);
+        FileLockWorkerIdAssigner second = new FileLockWorkerIdAssigner(directory);
+        try {
+            Assert.assertEquals(0L, first.assignWorkerId());
+            Assert.assertEquals(1L, second.assignWorkerId());
+            Assert.assertTrue(first.isWorkerIdValid());
+            Assert.assertTrue(new File(directory, "worker-0.lock").length() > 0);
+        } finally {
+            first.destroy();
+            second.destroy();
+        }
+    }
+
+    /**
+     * 正常释放之后id可以被其它实例使用，锁文件保留
+     */
+    @Test
+    public void testReuseAfterDestroy() throws Exception {
+        File directory = folder.newFolder("uid");
+        FileLockWorkerIdAssigner first = new FileLockWorkerIdAssigner(directory);
+        first.setMinWorkerId(5L);
+        Assert.assertEquals(5L, first.assignWorkerId());
+        first.releaseWorkerId(System.currentTimeMillis());
+        first.destroy();
+        Assert.assertFalse(first.isWorkerIdValid());
+        Assert.assertTrue(new File(directory, "worker-5.lock").exists());
+
+        FileLockWorkerIdAssigner second = new FileLockWorkerIdAssigner(directory);
+        second.setMinWorkerId(5L);
+        try {
+            Assert.assertEquals(5L, second.assignWorkerId());
+        } finally {
+            second.destroy();
+        }
+    }
+
+    /**
+     * 正常释放后复用同一个id，等待时钟超过上一个持有者记录的时间才返回
+     */
+    @Test
+    public void testWaitReusableMillisAfterRelease() throws Exception {
+        File directory = folder.newFolder("uid");
+        ManualUidClock clock = new ManualUidClock(System.currentTimeMillis());
+        FileLockWorkerIdAssigner first = new FileLockWorkerIdAssigner(directory);
+        first.setClock(clock);
+        Assert.assertEquals(0L, first.assignWorkerId());
+        first.releaseWorkerId(clock.currentMillis() + 1000);
+        first.destroy();
+
+        FileLockWorkerIdAssigner second = new FileLockWorkerIdAssigner(directory);
+        second.setClock(clock);
+        try {
+            CompletableFuture<Long> assigned = CompletableFuture.supplyAsync(second::assignWorkerId);
+            TimeUnit.MILLISECONDS.sleep(50);
+            Assert.assertFalse(assigned.isDone());
+
+            clock.advance(1, TimeUnit.SECONDS);
+            Assert.assertEquals(0L, assigned.get(5, TimeUnit.SECONDS).longValue());
+        } finally {
+            second.destroy();
+        }
+    }
+
+    /**
+     * 时钟落后上一个持有者记录的时间太多时不复用该id
+     */
+    @Test
+    public void testSkipWhenClockFarBehind() throws Exception {
+        File directory = folder.newFolder("uid");
+        FileLockWorkerIdAssigner first = new FileLockWorkerIdAssigner(directory);
+        Assert.assertEquals(0L, first.assignWorkerId());
+        first.releaseWorkerId(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10));
+        first.destroy();
+
+        FileLockWorkerIdAssigner second = new FileLockWorkerIdAssigner(directory);
+        try {
+            Assert.assertEquals(1L, second.assignWorkerId());
+        } finally {
+            second.destroy();
+        }
+    }
+
+    /**
+     * 上一个持有者没有释放（异常退出）时等待crashWaitSeconds
+     */
+    @Test
+    public void testWaitAfterCrash() throws Exception {
+        File directory = folder.newFolder("uid");
+        ManualUidClock clock = new ManualUidClock(System.currentTimeMillis());
+        FileLockWorkerIdAssigner first = new FileLockWorkerIdAssigner(directory);
+        first.setClock(clock);
+        Assert.assertEquals(0L, first.assignWorkerId());
+        first.destroy();
+
+        FileLockWorkerIdAssigner second = new FileLockWorkerIdAssigner(directory);
+        second.setClock(clock);
+        second.setCrashWaitSeconds(1L);
+        try {
+            CompletableFuture<Long> assigned = CompletableFuture.supplyAsync(second::assignWorkerId);
+            TimeUnit.MILLISECONDS.sleep(50);
+            Assert.assertFalse(assigned.isDone());
+
+            clock.advance(1, TimeUnit.SECONDS);
+            Assert.assertEquals(0L, assigned.get(5, TimeUnit.SECONDS).longValue());
+        } finally {
+            second.destroy();
+        }
+    }
+
+    /**
+     * 借用上限比crashWaitSeconds少2秒
+     */
+    @Test
+    public void testMaxBorrowBelowCrashWait() throws Exception {
+        FileLockWorkerIdAssigner assigner = new FileLockWorkerIdAssigner(folder.newFolder("uid"));
+        Assert.assertEquals(3L, assigner.getMaxBorrowSeconds().longValue());
+        assigner.setCrashWaitSeconds(1L);
+        Assert.assertEquals(0L, assigner.getMaxBorrowSeconds().longValue());
+    }
+
+    /**
+     * 缓存模式的生成器异常退出后，下一个持有者等待crashWaitSeconds，发出的uid都大于上一个持有者借用到的uid
+     */
+    @Test
+    public void testCachedGeneratorCrash() throws Exception {
+        File directory = folder.newFolder("uid");
+        ManualUidClock clock = new ManualUidClock(System.currentTimeMillis());
+        FileLockWorkerIdAssigner first = new FileLockWorkerIdAssigner(directory);
+        first.setClock(clock);
+        CachedUidGenerator crashed = new CachedUidGenerator();
+        crashed.setWorkerIdAssigner(first);
+        crashed.setClock(clock);
+        crashed.afterPropertiesSet();
+        Assert.assertEquals(3L, crashed.getMaxPaddingBorrowSeconds().longValue());
+
+        long[] borrowed = new long[(int) crashed.getAvailable()];
+        crashed.fill(borrowed);
+        long maxBorrowed = Arrays.stream(borrowed).max().getAsLong();
+        // 先释放文件锁，不记录reusableMillis，相当于进程被kill
+        first.destroy();
+        crashed.destroy();
+
+        FileLockWorkerIdAssigner second = new FileLockWorkerIdAssigner(directory);
+        second.setClock(clock);
+        CachedUidGenerator uidGenerator = new CachedUidGenerator();
+        uidGenerator.setWorkerIdAssigner(second);
+        uidGenerator.setClock(clock);
+        try {
+            CompletableFuture<Void> initialized = CompletableFuture.runAsync(() -> {
+                try {
+                    uidGenerator.afterPropertiesSet();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            TimeUnit.MILLISECONDS.sleep(50);
+            Assert.assertFalse(initialized.isDone());
+
+            clock.advance(5, TimeUnit.SECONDS);
+            initialized.get(5, TimeUnit.SECONDS);
+            Assert.assertEquals(0L, second.getWorkerId().longValue());
+            Assert.assertTrue(uidGenerator.getUID() > maxBorrowed);
+        } finally {
+            uidGenerator.destroy();
+            second.destroy();
+        }
+    }
+
+    /**
+     * [minWorkerId, maxWorkerId]全部被持有时启动失败
+     */
+    @Test
+    public void testNoFreeWorkerId() throws Exception {
+        File directory = folder.newFolder("uid");
+        FileLockWorkerIdAssigner first = new FileLockWorkerIdAssigner(directory);
+        first.setMaxWorkerId(0L);
+        FileLockWorkerIdAssigner second = new FileLockWorkerIdAssigner(directory);
+        second.setMaxWorkerId(0L);
+        try {
+            first.assignWorkerId();
+            second.assignWorkerId();
+            Assert.fail("Worker id range is exhausted");
+        } catch (YahhUIDException e) {
+            Assert.assertNull(second.getWorkerId());
+        } finally {
+            first.destroy();
+            second.destroy();
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.yahh.uid;
+
+import com.yahh.uid.exception.YahhUIDException;
+import com.yahh.uid.worker.dao.JdbcWorkerNodeDAO;
+import com.yahh.uid.worker.entity.WorkerNodeEntity;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.jdbc.datasource.ConnectionHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 使用动态代理模拟DataSource，测试JdbcWorkerNodeDAO的参数绑定、提交与异常处理，不需要数据库
+ */
+public class JdbcWorkerNodeDAOTest {
+
+    private final List<String> calls = new ArrayList<>();
+    private final Map<Integer, Object> parameters = new HashMap<>();
+    private String preparedSql;
+    private boolean autoCommit;
+    private SQLException updateException;
+    private Map<String, Object> row;
+
+    /**
+     * 连接不是自动提交时在语句执行后提交，连接与语句都会关闭
+     */
+    @Test
+    public void testCommitWhenNotAutoCommit() {
+        JdbcWorkerNodeDAO workerNodeDAO = new JdbcWorkerNodeDAO(dataSource());
+
+        Assert.assertEquals(1, workerNodeDAO.renewWorkerNode(3L, "host", "port"));
+        Assert.assertTrue(preparedSql.startsWith("UPDATE WORKER_NODE SET MODIFIED = NOW()"));
+        Assert.assertEquals(3L, parameters.get(1));
+        Assert.assertEquals("host", parameters.get(2));
+        Assert.assertEquals("port", parameters.get(3));
+        Assert.assertTrue(calls.contains("commit"));
+        Assert.assertTrue(calls.contains("statement.close"));
+        Assert.assertTrue(calls.contains("connection.close"));
+    }
+
+    /**
+     * 自动提交的连接不再调用commit
+     */
+    @Test
+    public void testNoCommitWhenAutoCommit() {
+        autoCommit = true;
+        JdbcWorkerNodeDAO workerNodeDAO = new JdbcWorkerNodeDAO(dataSource());
+
+        Assert.assertEquals(1, workerNodeDAO.releaseWorkerNode(3L, "host", "port", 61L, 1000L));
+        Assert.assertEquals(61L, parameters.get(1));
+        Assert.assertEquals(1000L, parameters.get(2));
+        Assert.assertEquals(3L, parameters.get(3));
+        Assert.assertFalse(calls.contains("commit"));
+    }
+
+    /**
+     * 在Spring事务中使用事务绑定的连接，由事务管理器提交与关闭
+     */
+    @Test
+    public void testUseTransactionalConnection() throws Exception {
+        DataSource dataSource = dataSource();
+        TransactionSynchronizationManager.bindResource(dataSource, new ConnectionHolder(dataSource.getConnection()));
+        try {
+            JdbcWorkerNodeDAO workerNodeDAO = new JdbcWorkerNodeDAO(dataSource);
+
+            Assert.assertEquals(1, workerNodeDAO.renewWorkerNode(3L, "host", "port"));
+            Assert.assertFalse(calls.contains("commit"));
+            Assert.assertFalse(calls.contains("connection.close"));
+            Assert.assertTrue(calls.contains("statement.close"));
+        } finally {
+            TransactionSynchronizationManager.unbindResource(dataSource);
+        }
+    }
+
+    /**
+     * SQLException包装为YahhUIDException，不提交，连接仍然关闭
+     */
+    @Test
+    public void testSqlExceptionWrapped() {
+        updateException = new SQLException("Deadlock");
+        JdbcWorkerNodeDAO workerNodeDAO = new JdbcWorkerNodeDAO(dataSource());
+
+        try {
+            workerNodeDAO.renewWorkerNode(3L, "host", "port");
+            Assert.fail("SQLException should be wrapped");
+        } catch (YahhUIDException e) {
+            Assert.assertSame(updateException, e.getCause());
+        }
+        Assert.assertFalse(calls.contains("commit"));
+        Assert.assertTrue(calls.contains("connection.close"));
+    }
+
+    /**
+     * 查询过期id时按顺序绑定参数，并读取REUSABLE_MILLIS
+     */
+    @Test
+    public void testGetExpiredWorkerNode() {
+        row = new HashMap<>();
+        row.put("ID", 5L);
+        row.put("HOST_NAME", "host");
+        row.put("PORT", "port");
+        row.put("TYPE", 2);
+        row.put("REUSABLE_MILLIS", 1000L);
+        JdbcWorkerNodeDAO workerNodeDAO = new JdbcWorkerNodeDAO(dataSource());
+
+        WorkerNodeEntity workerNode = workerNodeDAO.getExpiredWorkerNode(60L, 1023L, 2000L);
+        Assert.assertTrue(preparedSql.contains("REUSABLE_MILLIS <= ?"));
+        Assert.assertEquals(1023L, parameters.get(1));
+        Assert.assertEquals(2000L, parameters.get(2));
+        Assert.assertEquals(60L, parameters.get(3));
+        Assert.assertEquals(5L, workerNode.getId().longValue());
+        Assert.assertEquals("host", workerNode.getHostName());
+        Assert.assertEquals(2, workerNode.getType());
+        Assert.assertEquals(1000L, workerNode.getReusableMillis().longValue());
+    }
+
+    /**
+     * 查询结果为空时返回null
+     */
+    @Test
+    public void testGetWorkerNodeByHostPortNotFound() {
+        JdbcWorkerNodeDAO workerNodeDAO = new JdbcWorkerNodeDAO(dataSource());
+
+        Assert.assertNull(workerNodeDAO.getWorkerNodeByHostPort("host", "port"));
+        Assert.assertEquals("host", parameters.get(1));
+        Assert.assertEquals("port", parameters.get(2));
+    }
+
+    /**
+     * 插入后取回自增id
+     */
+    @Test
+    public void testAddWorkerNode() {
+        row = new HashMap<>();
+        row.put("GENERATED_KEY", 7L);
+        JdbcWorkerNodeDAO workerNodeDAO = new JdbcWorkerNodeDAO(dataSource());
+
+        WorkerNodeEntity workerNode = new WorkerNodeEntity();
+        workerNode.setHostName("host");
+        workerNode.setPort("port");
+        workerNode.setType(2);
+        workerNode.setLaunchDateDate(new Date());
+        workerNodeDAO.addWorkerNode(workerNode);
+
+        Assert.assertTrue(preparedSql.startsWith("INSERT INTO WORKER_NODE"));
+        Assert.assertFalse(preparedSql.contains("REUSABLE_MILLIS"));
+        Assert.assertEquals(7L, workerNode.getId().longValue());
+        Assert.assertTrue(parameters.get(4) instanceof Timestamp);
+        Assert.assertTrue(calls.contains("commit"));
+    }
+
+    /**
+     * 以租约方式插入的行写入REUSABLE_MILLIS
+     */
+    @Test
+    public void testAddLeasedWorkerNode() {
+        row = new HashMap<>();
+        row.put("GENERATED_KEY", 7L);
+        JdbcWorkerNodeDAO workerNodeDAO = new JdbcWorkerNodeDAO(dataSource());
+
+        WorkerNodeEntity workerNode = new WorkerNodeEntity();
+        workerNode.setHostName("host");
+        workerNode.setPort("port");
+        workerNode.setType(2);
+        workerNode.setLaunchDateDate(new Date());
+        workerNodeDAO.addLeasedWorkerNode(workerNode);
+
+        Assert.assertTrue(preparedSql.contains("REUSABLE_MILLIS"));
+        Assert.assertEquals(7L, workerNode.getId().longValue());
+        Assert.assertTrue(calls.contains("commit"));
+    }
+
+    private DataSource dataSource() {
+        ResultSet resultSet = proxy(ResultSet.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "next":
+                    boolean hasNext = row != null && !calls.contains("next");
+                    calls.add("next");
+                    return hasNext;
+                case "getLong":
+                    return args[0] instanceof Integer ? row.get("GENERATED_KEY") : row.get(args[0]);
+                case "getInt":
+                    return row.getOrDefault(args[0], 0);
+                case "getString":
+                case "getTimestamp":
+                    return row.get(args[0]);
+                default:
+                    return null;
+            }
+        });
+        PreparedStatement statement = proxy(PreparedStatement.class, (proxy, method, args) -> {
+            String name = method.getName();
+            if (name.startsWith("set")) {
+                parameters.put((Integer) args[0], args[1]);
+                return null;
+            }
+            switch (name) {
+                case "executeUpdate":
+                    if (updateException != null) {
+                        throw updateException;
+                    }
+                    return 1;
+                case "executeQuery":
+                case "getGeneratedKeys":
+                    return resultSet;
+                case "close":
+                    calls.add("statement.close");
+                    return null;
+                default:
+                    return null;
+            }
+        });
+        Connection connection = proxy(Connection.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "prepareStatement":
+                    preparedSql = (String) args[0];
+                    return statement;
+                case "getAutoCommit":
+                    return autoCommit;
+                case "commit":
+                    calls.add("commit");
+                    return null;
+                case "close":
+                    calls.add("connection.close");
+                    return null;
+                default:
+                    return null;
+            }
+        });
+        return proxy(DataSource.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getConnection":
+                    return connection;
+                // 作为TransactionSynchronizationManager中资源的key
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                default:
+                    return null;
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(JdbcWorkerNodeDAOTest.class.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+}
@@ -0,0 +1,271 @@
+package com.yahh.uid;
+
+import com.yahh.uid.clock.ManualUidClock;
+import com.yahh.uid.worker.LeasingWorkerIdAssigner;
+import com.yahh.uid.worker.dao.WorkerNodeDAO;
+import com.yahh.uid.worker.entity.WorkerNodeEntity;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 使用内存中的WorkerNodeDAO测试租约的接管、续租与释放，语句的条件与WORKER_NODE表上的一致
+ */
+public class LeasingWorkerIdAssignerTest {
+
+    private final InMemoryWorkerNodeDAO workerNodeDAO = new InMemoryWorkerNodeDAO();
+
+    /**
+     * 没有过期的id时插入新行，持有中的id不会被接管
+     */
+    @Test
+    public void testAddWhenNothingExpired() {
+        LeasingWorkerIdAssigner first = new LeasingWorkerIdAssigner(workerNodeDAO);
+        LeasingWorkerIdAssigner second = new LeasingWorkerIdAssigner(workerNodeDAO);
+        try {
+            Assert.assertEquals(1L, first.assignWorkerId());
+            Assert.assertEquals(2L, second.assignWorkerId());
+            Assert.assertTrue(first.isWorkerIdValid());
+            Assert.assertEquals(0L, workerNodeDAO.rows.get(1L).getReusableMillis().longValue());
+        } finally {
+            first.destroy();
+            second.destroy();
+        }
+    }
+
+    /**
+     * 释放时记录reusableMillis，其它节点立即接管，但要等时钟超过该时间才返回
+     */
+    @Test
+    public void testClaimWaitsReusableMillis() throws Exception {
+        ManualUidClock clock = new ManualUidClock(System.currentTimeMillis());
+        LeasingWorkerIdAssigner first = new LeasingWorkerIdAssigner(workerNodeDAO);
+        first.setClock(clock);
+        Assert.assertEquals(1L, first.assignWorkerId());
+        long reusableMillis = clock.currentMillis() + 1000;
+        first.releaseWorkerId(reusableMillis);
+        Assert.assertFalse(first.isWorkerIdValid());
+        Assert.assertEquals(reusableMillis, workerNodeDAO.rows.get(1L).getReusableMillis().longValue());
+
+        LeasingWorkerIdAssigner second = new LeasingWorkerIdAssigner(workerNodeDAO);
+        second.setClock(clock);
+        try {
+            CompletableFuture<Long> assigned = CompletableFuture.supplyAsync(second::assignWorkerId);
+            TimeUnit.MILLISECONDS.sleep(50);
+            Assert.assertFalse(assigned.isDone());
+
+            clock.advance(1, TimeUnit.SECONDS);
+            Assert.assertEquals(1L, assigned.get(5, TimeUnit.SECONDS).longValue());
+            Assert.assertTrue(second.isWorkerIdValid());
+            // 接管不修改REUSABLE_MILLIS，新的持有者异常退出后下一个节点仍按之前的时间等待
+            Assert.assertEquals(reusableMillis, workerNodeDAO.rows.get(1L).getReusableMillis().longValue());
+        } finally {
+            second.destroy();
+        }
+    }
+
+    /**
+     * 时钟落后REUSABLE_MILLIS太多时不接管，插入新行
+     */
+    @Test
+    public void testSkipWhenClockFarBehind() {
+        LeasingWorkerIdAssigner first = new LeasingWorkerIdAssigner(workerNodeDAO);
+        Assert.assertEquals(1L, first.assignWorkerId());
+        first.releaseWorkerId(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10));
+
+        LeasingWorkerIdAssigner second = new LeasingWorkerIdAssigner(workerNodeDAO);
+        try {
+            Assert.assertEquals(2L, second.assignWorkerId());
+        } finally {
+            second.destroy();
+        }
+    }
+
+    /**
+     * 生成器没有调用releaseWorkerId时destroy不提前释放，租约过期前不能被接管
+     */
+    @Test
+    public void testDestroyWithoutReleaseKeepsLease() {
+        LeasingWorkerIdAssigner first = new LeasingWorkerIdAssigner(workerNodeDAO);
+        Assert.assertEquals(1L, first.assignWorkerId());
+        first.destroy();
+        Assert.assertFalse(first.isWorkerIdValid());
+
+        LeasingWorkerIdAssigner second = new LeasingWorkerIdAssigner(workerNodeDAO);
+        try {
+            Assert.assertEquals(2L, second.assignWorkerId());
+        } finally {
+            second.destroy();
+        }
+    }
+
+    /**
+     * disposable模式插入的行REUSABLE_MILLIS为null，即使很久没有更新也不会被接管
+     */
+    @Test
+    public void testDisposableRowNotClaimed() {
+        WorkerNodeEntity disposable = new WorkerNodeEntity();
+        disposable.setHostName("disposable");
+        disposable.setPort("1");
+        workerNodeDAO.addWorkerNode(disposable);
+        workerNodeDAO.rows.get(1L).setModified(new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1)));
+
+        LeasingWorkerIdAssigner assigner = new LeasingWorkerIdAssigner(workerNodeDAO);
+        try {
+            Assert.assertEquals(2L, assigner.assignWorkerId());
+            Assert.assertEquals("disposable", workerNodeDAO.rows.get(1L).getHostName());
+        } finally {
+            assigner.destroy();
+        }
+    }
+
+    /**
+     * 续租时发现id已被其它节点接管，停止发号
+     */
+    @Test
+    public void testFencedWhenClaimedByOthers() throws Exception {
+        LeasingWorkerIdAssigner assigner = new LeasingWorkerIdAssigner(workerNodeDAO);
+        assigner.setLeaseSeconds(4L);
+        assigner.setHeartbeatSeconds(1L);
+        try {
+            Assert.assertEquals(1L, assigner.assignWorkerId());
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (workerNodeDAO.renewCount == 0 && System.nanoTime() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+            Assert.assertTrue(assigner.isWorkerIdValid());
+
+            workerNodeDAO.rows.get(1L).setHostName("other");
+            while (assigner.isWorkerIdValid() && System.nanoTime() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+            Assert.assertFalse(assigner.isWorkerIdValid());
+        } finally {
+            assigner.destroy();
+        }
+    }
+
+    /**
+     * 本地租约按借用上限提前失效，默认上限为允许值的一半
+     */
+    @Test
+    public void testLeaseShortenedByMaxBorrow() {
+        LeasingWorkerIdAssigner assigner = new LeasingWorkerIdAssigner(workerNodeDAO);
+        Assert.assertEquals(18L, assigner.getMaxBorrowSeconds().longValue());
+
+        assigner.setMaxBorrowSeconds(30L);
+        try {
+            assigner.assignWorkerId();
+            Assert.assertTrue(assigner.getLeaseRemainingNanos() <= TimeUnit.SECONDS.toNanos(60 - 2 - 30));
+        } finally {
+            assigner.destroy();
+        }
+    }
+
+    /**
+     * 借用上限达到 leaseSeconds - heartbeatSeconds - 2 时续租一次就会失效，启动时拒绝
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testMaxBorrowExceedsLease() {
+        LeasingWorkerIdAssigner assigner = new LeasingWorkerIdAssigner(workerNodeDAO);
+        assigner.setMaxBorrowSeconds(38L);
+        assigner.assignWorkerId();
+    }
+
+    /**
+     * MODIFIED使用真实时间，相当于数据库的NOW()
+     */
+    private static class InMemoryWorkerNodeDAO implements WorkerNodeDAO {
+
+        private final Map<Long, WorkerNodeEntity> rows = new ConcurrentSkipListMap<>();
+        private volatile int renewCount;
+
+        @Override
+        public WorkerNodeEntity getWorkerNodeByHostPort(String host, String port) {
+            return rows.values().stream()
+                    .filter(row -> row.getHostName().equals(host) && row.getPort().equals(port))
+                    .findFirst().orElse(null);
+        }
+
+        @Override
+        public synchronized void addWorkerNode(WorkerNodeEntity workerNodeEntity) {
+            workerNodeEntity.setId((long) rows.size() + 1);
+            workerNodeEntity.setModified(new Date());
+            rows.put(workerNodeEntity.getId(), copy(workerNodeEntity));
+        }
+
+        @Override
+        public synchronized void addLeasedWorkerNode(WorkerNodeEntity workerNodeEntity) {
+            workerNodeEntity.setId((long) rows.size() + 1);
+            WorkerNodeEntity row = copy(workerNodeEntity);
+            row.setReusableMillis(0L);
+            row.setModified(new Date());
+            rows.put(row.getId(), row);
+        }
+
+        @Override
+        public synchronized WorkerNodeEntity getExpiredWorkerNode(long leaseSeconds, long maxWorkerId, long maxReusableMillis) {
+            return rows.values().stream()
+                    .filter(row -> row.getId() <= maxWorkerId && row.getReusableMillis() != null
+                            && row.getReusableMillis() <= maxReusableMillis && expired(row, leaseSeconds))
+                    .findFirst().map(InMemoryWorkerNodeDAO::copy).orElse(null);
+        }
+
+        @Override
+        public synchronized int claimWorkerNode(WorkerNodeEntity workerNodeEntity, long leaseSeconds) {
+            WorkerNodeEntity row = rows.get(workerNodeEntity.getId());
+            if (row == null || !workerNodeEntity.getReusableMillis().equals(row.getReusableMillis()) || !expired(row, leaseSeconds)) {
+                return 0;
+            }
+            row.setHostName(workerNodeEntity.getHostName());
+            row.setPort(workerNodeEntity.getPort());
+            row.setType(workerNodeEntity.getType());
+            row.setModified(new Date());
+            return 1;
+        }
+
+        @Override
+        public synchronized int renewWorkerNode(long id, String host, String port) {
+            renewCount++;
+            WorkerNodeEntity row = rows.get(id);
+            if (row == null || !row.getHostName().equals(host) || !row.getPort().equals(port)) {
+                return 0;
+            }
+            row.setModified(new Date());
+            return 1;
+        }
+
+        @Override
+        public synchronized int releaseWorkerNode(long id, String host, String port, long expiredSeconds, long reusableMillis) {
+            WorkerNodeEntity row = rows.get(id);
+            if (row == null || !row.getHostName().equals(host) || !row.getPort().equals(port)) {
+                return 0;
+            }
+            row.setModified(new Date(System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(expiredSeconds)));
+            row.setReusableMillis(reusableMillis);
+            return 1;
+        }
+
+        private static boolean expired(WorkerNodeEntity row, long leaseSeconds) {
+            return row.getModified().getTime() < System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(leaseSeconds);
+        }
+
+        private static WorkerNodeEntity copy(WorkerNodeEntity source) {
+            WorkerNodeEntity row = new WorkerNodeEntity();
+            row.setId(source.getId());
+            row.setHostName(source.getHostName());
+            row.setPort(source.getPort());
+            row.setType(source.getType());
+            row.setLaunchDateDate(source.getLaunchDate());
+            row.setReusableMillis(source.getReusableMillis());
+            row.setModified(source.getModified());
+            return row;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.yahh.uid;
+
+import com.yahh.uid.impl.DefaultUidGenerator;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 测试DefaultUidGenerator的无锁生成与序列号用完时的等待，workerId固定为1，不依赖数据库
+ */
+public class LockFreeUidGeneratorTest {
+
+    /**
+     * 多个线程同时生成，CAS推进的state不会发出重复的uid
+     */
+    @Test
+    public void testParallelGenerateUnique() throws Exception {
+        DefaultUidGenerator uidGenerator = new DefaultUidGenerator();
+        // 每秒2^19个序列号，避免测试在等待下一秒上耗时
+        uidGenerator.setTimeBits(28);
+        uidGenerator.setWorkerIdBits(16);
+        uidGenerator.setSeqBits(19);
+        uidGenerator.setWorkerIdAssigner(() -> 1L);
+        uidGenerator.afterPropertiesSet();
+
+        int threads = 4;
+        int perThread = 50_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<long[]>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                results.add(pool.submit(() -> {
+                    long[] uids = new long[perThread];
+                    for (int i = 0; i < perThread; i++) {
+                        uids[i] = uidGenerator.getUID();
+                    }
+                    return uids;
+                }));
+            }
+
+            Set<Long> uids = new HashSet<>();
+            for (Future<long[]> result : results) {
+                for (long uid : result.get(60, TimeUnit.SECONDS)) {
+                    Assert.assertTrue("Duplicated uid " + uid, uids.add(uid));
+                }
+            }
+            Assert.assertEquals(threads * perThread, uids.size());
+        } finally {
+            pool.shutdownNow();
+            uidGenerator.destroy();
+        }
+    }
+
+    /**
+     * lastSecond与sequence打包在同一个state中，getter与setter互不覆盖
+     */
+    @Test
+    public void testPackedState() throws Exception {
+        DefaultUidGenerator uidGenerator = new DefaultUidGenerator();
+        uidGenerator.setWorkerIdAssigner(() -> 1L);
+        uidGenerator.afterPropertiesSet();
+        try {
+            Assert.assertEquals(-1L, uidGenerator.getLastSecond());
+
+            uidGenerator.setLastSecond(uidGenerator.getEpochSeconds() + 100);
+            uidGenerator.setSequence(5L);
+            Assert.assertEquals(uidGenerator.getEpochSeconds() + 100, uidGenerator.getLastSecond());
+            Assert.assertEquals(5L, uidGenerator.getSequence());
+
+            uidGenerator.setLastSecond(uidGenerator.getEpochSeconds() + 200);
+            Assert.assertEquals(uidGenerator.getEpochSeconds() + 200, uidGenerator.getLastSecond());
+            Assert.assertEquals(5L, uidGenerator.getSequence());
+        } finally {
+            uidGenerator.destroy();
+        }
+    }
+
+    /**
+     * 每秒只有8个序列号，连续生成17个uid至少用完一整秒，需要park到下一秒
+     */
+    @Test
+    public void testParkWhenSequenceExhausted() throws Exception {
+        DefaultUidGenerator uidGenerator = newSmallSequenceGenerator();
+        try {
+            long[] uids = uidGenerator.getUIDs(17);
+            for (int i = 1; i < uids.length; i++) {
+                Assert.assertTrue(uids[i] > uids[i - 1]);
+            }
+            Assert.assertTrue(uidGenerator.getExhaustedWaitCount() >= 1);
+        } finally {
+            uidGenerator.destroy();
+        }
+    }
+
+    /**
+     * 允许借用2秒时，连续用完3秒的序列号不需要等待
+     */
+    @Test
+    public void testBorrowFutureSeconds() throws Exception {
+        DefaultUidGenerator uidGenerator = newSmallSequenceGenerator();
+        uidGenerator.setMaxBorrowSeconds(2);
+        try {
+            long first = uidGenerator.getUID();
+            long last = first;
+            for (int i = 1; i < 24; i++) {
+                long uid = uidGenerator.getUID();
+                Assert.assertTrue(uid > last);
+                last = uid;
+            }
+            Assert.assertEquals(0L, uidGenerator.getExhaustedWaitCount());
+            Assert.assertTrue((last >>> 35) - (first >>> 35) >= 2);
+        } finally {
+            uidGenerator.destroy();
+        }
+    }
+
+    /**
+     * 每秒8个序列号：28位时间、32位workerId、3位序列号
+     */
+    private static DefaultUidGenerator newSmallSequenceGenerator() throws Exception {
+        DefaultUidGenerator uidGenerator = new DefaultUidGenerator();
+        uidGenerator.setTimeBits(28);
+        uidGenerator.setWorkerIdBits(32);
+        uidGenerator.setSeqBits(3);
+        uidGenerator.setWorkerIdAssigner(() -> 1L);
+        uidGenerator.afterPropertiesSet();
+        return uidGenerator;
+    }
+}
@@ -0,0 +1,212 @@
+package com.yahh.uid;
+
+import com.yahh.uid.clock.ManualUidClock;
+import com.yahh.uid.exception.YahhUIDException;
+import com.yahh.uid.impl.DefaultUidGenerator;
+import com.yahh.uid.worker.WorkerIdAssigner;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 使用手动时钟测试DefaultUidGenerator，不依赖数据库
+ */
+public class ManualClockUidGeneratorTest {
+
+    private static final long EPOCH_SECONDS = TimeUnit.MILLISECONDS.toSeconds(1614528000000L);
+
+    private ManualUidClock clock;
+    private DefaultUidGenerator uidGenerator;
+
+    @Before
+    public void setUp() throws Exception {
+        clock = new ManualUidClock(TimeUnit.SECONDS.toMillis(EPOCH_SECONDS + 1000));
+
+        uidGenerator = new DefaultUidGenerator();
+        uidGenerator.setWorkerIdAssigner(() -> 1L);
+        uidGenerator.setClock(clock);
+        uidGenerator.afterPropertiesSet();
+    }
+
+    /**
+     * 生成的id使用时钟给出的秒
+     */
+    @Test
+    public void testUsesClockSecond() {
+        Assert.assertEquals(1000L, deltaSeconds(uidGenerator.getUID()));
+
+        clock.advance(3, TimeUnit.SECONDS);
+        Assert.assertEquals(1003L, deltaSeconds(uidGenerator.getUID()));
+    }
+
+    /**
+     * 时钟回拨时拒绝生成
+     */
+    @Test(expected = YahhUIDException.class)
+    public void testClockMovedBackwards() {
+        uidGenerator.getUID();
+
+        clock.advance(-5, TimeUnit.SECONDS);
+        uidGenerator.getUID();
+    }
+
+    /**
+     * 容忍范围内的时钟回拨继续使用lastSecond，只计数一次
+     */
+    @Test
+    public void testSmallClockBackwardTolerated() {
+        long first = uidGenerator.getUID();
+
+        clock.advance(-800, TimeUnit.MILLISECONDS);
+        long second = uidGenerator.getUID();
+        long third = uidGenerator.getUID();
+
+        Assert.assertEquals(1000L, deltaSeconds(second));
+        Assert.assertEquals(first + 1, second);
+        Assert.assertEquals(second + 1, third);
+        Assert.assertEquals(1L, uidGenerator.getBackwardCount());
+    }
+
+    /**
+     * 关闭容忍时任何回拨都拒绝生成
+     */
+    @Test(expected = YahhUIDException.class)
+    public void testClockBackwardDisabled() {
+        uidGenerator.setEnableBackward(false);
+        uidGenerator.getUID();
+
+        clock.advance(-1, TimeUnit.SECONDS);
+        uidGenerator.getUID();
+    }
+
+    /**
+     * 当前秒的序列号用完后等待时钟进入下一秒
+     */
+    @Test
+    public void testWaitNextSecondWhenExhausted() throws Exception {
+        long maxSequence = ~(-1L << 13);
+        for (long i = 0; i <= maxSequence; i++) {
+            Assert.assertEquals(1000L, deltaSeconds(uidGenerator.getUID()));
+        }
+
+        CompletableFuture<Long> next = CompletableFuture.supplyAsync(uidGenerator::getUID);
+        TimeUnit.MILLISECONDS.sleep(50);
+        Assert.assertFalse(next.isDone());
+
+        clock.advance(1, TimeUnit.SECONDS);
+        Assert.assertEquals(1001L, deltaSeconds(next.get(5, TimeUnit.SECONDS)));
+        Assert.assertEquals(1L, uidGenerator.getExhaustedWaitCount());
+    }
+
+    /**
+     * 借用额度用完后只等待时钟回到借用范围内，不需要等时钟追上已借用的最后一秒
+     */
+    @Test
+    public void testWaitBackIntoBorrowWindow() throws Exception {
+        uidGenerator.setMaxBorrowSeconds(2);
+        long maxSequence = ~(-1L << 13);
+        for (long second = 1000; second <= 1002; second++) {
+            for (long i = 0; i <= maxSequence; i++) {
+                Assert.assertEquals(second, deltaSeconds(uidGenerator.getUID()));
+            }
+        }
+
+        CompletableFuture<Long> next = CompletableFuture.supplyAsync(uidGenerator::getUID);
+        TimeUnit.MILLISECONDS.sleep(50);
+        Assert.assertFalse(next.isDone());
+
+        clock.advance(1, TimeUnit.SECONDS);
+        Assert.assertEquals(1003L, deltaSeconds(next.get(5, TimeUnit.SECONDS)));
+        Assert.assertEquals(1L, uidGenerator.getExhaustedWaitCount());
+    }
+
+    /**
+     * 毫秒模式下每毫秒拥有独立的序列号空间
+     */
+    @Test
+    public void testMillisecondTimestamp() throws Exception {
+        DefaultUidGenerator millisGenerator = new DefaultUidGenerator();
+        millisGenerator.setTimeBits(BitsAllocator.MILLIS_TIMESTAMP_BITS);
+        millisGenerator.setWorkerIdBits(BitsAllocator.MILLIS_WORKER_ID_BITS);
+        millisGenerator.setSeqBits(BitsAllocator.MILLIS_SEQUENCE_BITS);
+        millisGenerator.setTimestampUnit(TimeUnit.MILLISECONDS);
+        millisGenerator.setWorkerIdAssigner(() -> 1L);
+        millisGenerator.setClock(clock);
+        millisGenerator.afterPropertiesSet();
+
+        int timestampShift = BitsAllocator.MILLIS_WORKER_ID_BITS + BitsAllocator.MILLIS_SEQUENCE_BITS;
+        long first = millisGenerator.getUID();
+        Assert.assertEquals(1000_000L, first >>> timestampShift);
+
+        clock.advance(7, TimeUnit.MILLISECONDS);
+        long second = millisGenerator.getUID();
+        Assert.assertEquals(1000_007L, second >>> timestampShift);
+        Assert.assertTrue(second > first);
+        Assert.assertTrue(millisGenerator.pareUID(second).contains(".007\""));
+    }
+
+    /**
+     * 借用未来的时间超过WorkerIdAssigner允许的上限时初始化失败
+     */
+    @Test(expected = YahhUIDException.class)
+    public void testBorrowExceedsAssignerLimit() throws Exception {
+        DefaultUidGenerator borrowGenerator = new DefaultUidGenerator();
+        borrowGenerator.setMaxBorrowSeconds(5L);
+        borrowGenerator.setWorkerIdAssigner(new WorkerIdAssigner() {
+            @Override
+            public long assignWorkerId() {
+                return 1L;
+            }
+
+            @Override
+            public Long getMaxBorrowSeconds() {
+                return 3L;
+            }
+        });
+        borrowGenerator.setClock(clock);
+        borrowGenerator.afterPropertiesSet();
+    }
+
+    /**
+     * epochStr按东八区零点解析，默认值与原来固定的时间基点一致
+     */
+    @Test
+    public void testEpochStr() throws Exception {
+        DefaultUidGenerator epochGenerator = new DefaultUidGenerator();
+        epochGenerator.setEpochStr("2021-03-01");
+        Assert.assertEquals(EPOCH_SECONDS, epochGenerator.getEpochSeconds().longValue());
+
+        epochGenerator.setEpochStr("2021-02-01");
+        epochGenerator.setWorkerIdAssigner(() -> 1L);
+        epochGenerator.setClock(clock);
+        epochGenerator.afterPropertiesSet();
+        Assert.assertEquals(1000L + TimeUnit.DAYS.toSeconds(28), deltaSeconds(epochGenerator.getUID()));
+    }
+
+    /**
+     * 时间基点晚于当前时间时启动失败
+     */
+    @Test(expected = YahhUIDException.class)
+    public void testEpochLaterThanNow() throws Exception {
+        DefaultUidGenerator epochGenerator = new DefaultUidGenerator();
+        epochGenerator.setEpochStr("2021-03-02");
+        epochGenerator.setWorkerIdAssigner(() -> 1L);
+        epochGenerator.setClock(clock);
+        epochGenerator.afterPropertiesSet();
+    }
+
+    /**
+     * 格式错误的时间基点直接拒绝
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidEpochStr() {
+        new DefaultUidGenerator().setEpochStr("2021/03/01");
+    }
+
+    private long deltaSeconds(long uid) {
+        return uid >>> (22 + 13);
+    }
+}
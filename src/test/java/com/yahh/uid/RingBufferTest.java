@@ -0,0 +1,249 @@
+package com.yahh.uid;
+
+import com.yahh.uid.buffer.RingBuffer;
+import com.yahh.uid.buffer.TakeWaitStrategy;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 直接测试RingBuffer的放入与获取
+ * paddingFactor为1时小于100个slot的环填充阈值为0，获取时不会触发异步填充，环中只有测试放入的uid
+ */
+public class RingBufferTest {
+
+    /**
+     * 环满后拒绝放入，按放入的顺序取出，取空后交给拒绝策略
+     */
+    @Test
+    public void testPutUntilFullThenTake() {
+        RingBuffer ringBuffer = new RingBuffer(8, 1);
+        AtomicLong rejectedPuts = new AtomicLong();
+        ringBuffer.setRejectedPutHandler((buffer, uid) -> rejectedPuts.incrementAndGet());
+
+        for (long uid = 0; uid < 8; uid++) {
+            Assert.assertTrue(ringBuffer.put(uid));
+        }
+        Assert.assertFalse(ringBuffer.put(8L));
+        Assert.assertEquals(1L, rejectedPuts.get());
+
+        for (long uid = 0; uid < 8; uid++) {
+            Assert.assertEquals(uid, ringBuffer.take());
+        }
+        try {
+            ringBuffer.take();
+            Assert.fail("Take from an empty ring should be rejected");
+        } catch (RuntimeException e) {
+            Assert.assertEquals(7L, ringBuffer.getCursor());
+        }
+    }
+
+    /**
+     * 取出后slot的flag恢复为可放入，多次绕环后相邻slot的flag互不影响
+     */
+    @Test
+    public void testSlotsReusedAfterWrap() {
+        RingBuffer ringBuffer = new RingBuffer(8, 1);
+
+        for (long round = 0; round < 3; round++) {
+            for (long i = 0; i < 5; i++) {
+                Assert.assertTrue(ringBuffer.put(round * 100 + i));
+            }
+            for (long i = 0; i < 5; i++) {
+                Assert.assertEquals(round * 100 + i, ringBuffer.take());
+            }
+        }
+        Assert.assertEquals(14L, ringBuffer.getTail());
+        Assert.assertEquals(14L, ringBuffer.getCursor());
+    }
+
+    /**
+     * 批量获取最多取出可消费的部分，并释放对应的slot
+     */
+    @Test
+    public void testBatchTake() {
+        RingBuffer ringBuffer = new RingBuffer(8, 1);
+        for (long uid = 0; uid < 8; uid++) {
+            ringBuffer.put(uid);
+        }
+
+        long[] dest = new long[5];
+        Assert.assertEquals(5, ringBuffer.take(dest, 0, 5));
+        Assert.assertArrayEquals(new long[]{0, 1, 2, 3, 4}, dest);
+
+        Assert.assertTrue(ringBuffer.put(8L));
+        Assert.assertEquals(4, ringBuffer.take(dest, 0, 5));
+        Assert.assertArrayEquals(new long[]{5, 6, 7, 8}, Arrays.copyOf(dest, 4));
+    }
+
+    /**
+     * 多个生产者批量放入、多个消费者批量获取，取出的uid不重复也不遗漏
+     */
+    @Test
+    public void testConcurrentPutRangeAndTakeUnique() throws Exception {
+        RingBuffer ringBuffer = new RingBuffer(64, 1);
+        ringBuffer.setRejectedPutHandler((buffer, uid) -> { });
+        ringBuffer.setRejectedTakeHandler(buffer -> { });
+        int producers = 4;
+        int consumers = 4;
+        int perProducer = 50_000;
+        long total = (long) producers * perProducer;
+
+        ExecutorService pool = Executors.newFixedThreadPool(producers + consumers);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicLong takenCount = new AtomicLong();
+        try {
+            for (int p = 0; p < producers; p++) {
+                long base = (long) p * perProducer;
+                pool.submit(() -> {
+                    start.await();
+                    long next = base;
+                    long end = base + perProducer;
+                    while (next < end) {
+                        int put = ringBuffer.putRange(next, (int) Math.min(7, end - next));
+                        next += put;
+                        if (put == 0) {
+                            Thread.yield();
+                        }
+                    }
+                    return null;
+                });
+            }
+
+            List<Future<long[]>> results = new ArrayList<>();
+            for (int c = 0; c < consumers; c++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    long[] taken = new long[(int) total];
+                    int size = 0;
+                    while (takenCount.get() < total) {
+                        int count = ringBuffer.take(taken, size, 5);
+                        size += count;
+                        takenCount.addAndGet(count);
+                        if (count == 0) {
+                            Thread.yield();
+                        }
+                    }
+                    return Arrays.copyOf(taken, size);
+                }));
+            }
+            start.countDown();
+
+            boolean[] seen = new boolean[(int) total];
+            long count = 0;
+            for (Future<long[]> result : results) {
+                for (long uid : result.get(60, TimeUnit.SECONDS)) {
+                    Assert.assertFalse("Duplicated uid " + uid, seen[(int) uid]);
+                    seen[(int) uid] = true;
+                    count++;
+                }
+            }
+            Assert.assertEquals(total, count);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * 批量放入跨过环的末尾，环满时只放入空闲的部分，剩余部分交给拒绝策略
+     */
+    @Test
+    public void testPutRangeWrapsAroundRingEnd() {
+        RingBuffer ringBuffer = new RingBuffer(8, 1);
+        AtomicLong rejectedPuts = new AtomicLong();
+        ringBuffer.setRejectedPutHandler((buffer, uid) -> rejectedPuts.incrementAndGet());
+        long[] dest = new long[10];
+
+        Assert.assertEquals(6, ringBuffer.putRange(0L, 6));
+        Assert.assertEquals(5, ringBuffer.take(dest, 0, 5));
+
+        // slot 6、7之后回到slot 0，与cursor之间保留一个slot，只剩6个空闲slot
+        Assert.assertEquals(6, ringBuffer.putRange(100L, 7));
+        Assert.assertEquals(1L, rejectedPuts.get());
+
+        Assert.assertEquals(7, ringBuffer.take(dest, 0, dest.length));
+        Assert.assertArrayEquals(new long[]{5, 100, 101, 102, 103, 104, 105}, Arrays.copyOf(dest, 7));
+    }
+
+    /**
+     * 环已空时poll返回EMPTY_UID，不触发拒绝策略
+     */
+    @Test
+    public void testPollReturnsEmptySentinel() {
+        RingBuffer ringBuffer = new RingBuffer(8, 1);
+        AtomicLong rejectedTakes = new AtomicLong();
+        ringBuffer.setRejectedTakeHandler(buffer -> rejectedTakes.incrementAndGet());
+        Assert.assertEquals(RingBuffer.EMPTY_UID, ringBuffer.poll());
+
+        ringBuffer.put(42L);
+        Assert.assertEquals(42L, ringBuffer.poll());
+        Assert.assertEquals(RingBuffer.EMPTY_UID, ringBuffer.poll());
+        Assert.assertEquals(0, ringBuffer.poll(new long[4], 0, 4));
+        Assert.assertEquals(0L, rejectedTakes.get());
+    }
+
+    /**
+     * 批量take在拒绝策略返回后再取一次，拒绝策略同步补充的uid可以取到，仍为空时返回0
+     */
+    @Test
+    public void testBatchTakeRetriesAfterRejectHandler() {
+        RingBuffer ringBuffer = new RingBuffer(8, 1);
+        ringBuffer.setRejectedTakeHandler(buffer -> buffer.putRange(100L, 3));
+
+        long[] dest = new long[4];
+        Assert.assertEquals(3, ringBuffer.take(dest, 0, 4));
+        Assert.assertEquals(100L, dest[0]);
+        Assert.assertEquals(102L, dest[2]);
+
+        ringBuffer.setRejectedTakeHandler(buffer -> { });
+        Assert.assertEquals(0, ringBuffer.take(dest, 0, 4));
+        Assert.assertEquals(2L, ringBuffer.getRejectedTakeCount());
+    }
+
+    /**
+     * 带超时的take在环一直为空时等待到超时，再交给拒绝策略
+     */
+    @Test
+    public void testTimedTakeTimesOut() {
+        RingBuffer ringBuffer = new RingBuffer(8, 1);
+        ringBuffer.setRejectedTakeHandler(buffer -> {
+            throw new IllegalStateException("rejected");
+        });
+
+        long startNanos = System.nanoTime();
+        try {
+            ringBuffer.take(50, TimeUnit.MILLISECONDS);
+            Assert.fail("Take from an empty ring should be rejected");
+        } catch (IllegalStateException e) {
+            Assert.assertEquals("rejected", e.getMessage());
+        }
+        Assert.assertTrue(System.nanoTime() - startNanos >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    /**
+     * 等待期间有uid放入时，take取到该uid
+     */
+    @Test
+    public void testBlockingTakeWakesOnPut() throws Exception {
+        RingBuffer ringBuffer = new RingBuffer(8, 1);
+        ringBuffer.setTakeWaitStrategy(TakeWaitStrategy.PARK);
+        ringBuffer.setTakeTimeout(5, TimeUnit.SECONDS);
+
+        CompletableFuture<Long> taken = CompletableFuture.supplyAsync(ringBuffer::take);
+        TimeUnit.MILLISECONDS.sleep(50);
+        Assert.assertFalse(taken.isDone());
+        ringBuffer.put(7L);
+
+        Assert.assertEquals(7L, taken.get(5, TimeUnit.SECONDS).longValue());
+    }
+}
@@ -0,0 +1,72 @@
+package com.yahh.uid;
+
+import com.yahh.uid.impl.CachedUidGenerator;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 测试分片模式的CachedUidGenerator，workerId固定为1，不依赖数据库
+ */
+public class ShardedCachedUidGeneratorTest {
+
+    /**
+     * 多个线程同时获取，各分片的序列号区间不重叠，uid不重复
+     */
+    @Test
+    public void testShardedUidsUnique() throws Exception {
+        CachedUidGenerator uidGenerator = new CachedUidGenerator();
+        uidGenerator.setWorkerIdAssigner(() -> 1L);
+        uidGenerator.setShardCount(4);
+        uidGenerator.afterPropertiesSet();
+
+        // 总数小于环的大小，取空时不依赖填充线程的速度
+        int threads = 8;
+        int perThread = 4_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<long[]>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                boolean batch = t % 2 == 0;
+                results.add(pool.submit(() -> {
+                    long[] uids = new long[perThread];
+                    if (batch) {
+                        uidGenerator.fill(uids);
+                    } else {
+                        for (int i = 0; i < perThread; i++) {
+                            uids[i] = uidGenerator.getUID();
+                        }
+                    }
+                    return uids;
+                }));
+            }
+
+            Set<Long> uids = new HashSet<>();
+            for (Future<long[]> result : results) {
+                for (long uid : result.get(60, TimeUnit.SECONDS)) {
+                    Assert.assertTrue("Duplicated uid " + uid, uids.add(uid));
+                }
+            }
+            Assert.assertEquals(threads * perThread, uids.size());
+        } finally {
+            pool.shutdownNow();
+            uidGenerator.destroy();
+        }
+    }
+
+    /**
+     * 分片数必须是2的幂
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testShardCountPowerOfTwo() {
+        new CachedUidGenerator().setShardCount(3);
+    }
+}
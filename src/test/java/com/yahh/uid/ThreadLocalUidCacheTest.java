@@ -0,0 +1,202 @@
+package com.yahh.uid;
+
+import com.yahh.uid.buffer.ThreadLocalUidCache;
+import com.yahh.uid.exception.YahhUIDException;
+import com.yahh.uid.impl.CachedUidGenerator;
+import com.yahh.uid.worker.WorkerIdAssigner;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 测试线程本地租用uid，UidSource使用递增的计数器代替RingBuffer
+ */
+public class ThreadLocalUidCacheTest {
+
+    private final AtomicLong next = new AtomicLong();
+    private final AtomicInteger renewCount = new AtomicInteger();
+
+    private final ThreadLocalUidCache cache = new ThreadLocalUidCache(4, (dest, offset, length) -> {
+        renewCount.incrementAndGet();
+        for (int i = 0; i < length; i++) {
+            dest[offset + i] = next.getAndIncrement();
+        }
+        return length;
+    });
+
+    /**
+     * 一次租用leaseSize个uid，用完之前不再访问UidSource
+     */
+    @Test
+    public void testServeFromLease() {
+        for (long uid = 0; uid < 8; uid++) {
+            Assert.assertEquals(uid, cache.take());
+        }
+        Assert.assertEquals(2, renewCount.get());
+    }
+
+    /**
+     * 不同线程持有各自的租约，取到的uid不重叠
+     */
+    @Test
+    public void testLeasePerThread() throws Exception {
+        Assert.assertEquals(0L, cache.take());
+
+        long other = CompletableFuture.supplyAsync(cache::take).get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(4L, other);
+        Assert.assertEquals(1L, cache.take());
+    }
+
+    /**
+     * invalidate之后已租用未使用的uid作废，重新租用
+     */
+    @Test
+    public void testInvalidateDropsLease() throws Exception {
+        Assert.assertEquals(0L, cache.take());
+        long other = CompletableFuture.supplyAsync(() -> {
+            cache.take();
+            cache.invalidate();
+            return cache.take();
+        }).get(5, TimeUnit.SECONDS);
+        Assert.assertEquals(8L, other);
+
+        Assert.assertEquals(12L, cache.take());
+        Assert.assertEquals(4, renewCount.get());
+    }
+
+    /**
+     * UidSource取不到uid时抛出异常，不空转重试
+     */
+    @Test
+    public void testRenewFailsWhenSourceEmpty() {
+        ThreadLocalUidCache emptyCache = new ThreadLocalUidCache(4, (dest, offset, length) -> {
+            renewCount.incrementAndGet();
+            return 0;
+        });
+        try {
+            emptyCache.take();
+            Assert.fail("Empty uid source should be rejected");
+        } catch (YahhUIDException e) {
+            Assert.assertEquals(1, renewCount.get());
+        }
+    }
+
+    /**
+     * CachedUidGenerator开启租用后多个线程同时获取，uid不重复
+     */
+    @Test
+    public void testCachedGeneratorWithLeasing() throws Exception {
+        CachedUidGenerator uidGenerator = new CachedUidGenerator();
+        uidGenerator.setWorkerIdAssigner(() -> 1L);
+        uidGenerator.setLeaseSize(16);
+        uidGenerator.afterPropertiesSet();
+
+        int threads = 4;
+        int perThread = 10_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<long[]>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                results.add(pool.submit(() -> {
+                    long[] uids = new long[perThread];
+                    for (int i = 0; i < perThread; i++) {
+                        uids[i] = uidGenerator.getUID();
+                    }
+                    return uids;
+                }));
+            }
+
+            Set<Long> uids = new HashSet<>();
+            for (Future<long[]> result : results) {
+                for (long uid : result.get(60, TimeUnit.SECONDS)) {
+                    Assert.assertTrue("Duplicated uid " + uid, uids.add(uid));
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+            uidGenerator.destroy();
+        }
+    }
+
+    /**
+     * workerId失效后线程本地和环中已缓存的uid都不再发出，填充借用的上限默认取WorkerIdAssigner的上限
+     */
+    @Test
+    public void testFencedGeneratorStopsServingLease() throws Exception {
+        AtomicBoolean valid = new AtomicBoolean(true);
+        CachedUidGenerator uidGenerator = new CachedUidGenerator();
+        uidGenerator.setWorkerIdAssigner(new LimitedWorkerIdAssigner(valid));
+        uidGenerator.setLeaseSize(16);
+        uidGenerator.afterPropertiesSet();
+        try {
+            uidGenerator.getUID();
+            Assert.assertEquals(3L, uidGenerator.getMaxPaddingBorrowSeconds().longValue());
+
+            valid.set(false);
+            try {
+                uidGenerator.getUID();
+                Assert.fail("Leased uid should not be served after the worker id is fenced");
+            } catch (YahhUIDException e) {
+                Assert.assertTrue(uidGenerator.getAvailable() > 0);
+            }
+            try {
+                uidGenerator.fill(new long[4]);
+                Assert.fail("Buffered uid should not be served after the worker id is fenced");
+            } catch (YahhUIDException e) {
+                Assert.assertTrue(uidGenerator.getAvailable() > 0);
+            }
+        } finally {
+            uidGenerator.destroy();
+        }
+    }
+
+    /**
+     * 填充借用的上限超过WorkerIdAssigner允许的上限时初始化失败
+     */
+    @Test(expected = YahhUIDException.class)
+    public void testPaddingBorrowExceedsAssignerLimit() throws Exception {
+        CachedUidGenerator uidGenerator = new CachedUidGenerator();
+        uidGenerator.setWorkerIdAssigner(new LimitedWorkerIdAssigner(new AtomicBoolean(true)));
+        uidGenerator.setMaxPaddingBorrowSeconds(10L);
+        uidGenerator.afterPropertiesSet();
+    }
+
+    /**
+     * 借用上限为3秒，valid为false时workerId失效
+     */
+    private static class LimitedWorkerIdAssigner implements WorkerIdAssigner {
+
+        private final AtomicBoolean valid;
+
+        private LimitedWorkerIdAssigner(AtomicBoolean valid) {
+            this.valid = valid;
+        }
+
+        @Override
+        public long assignWorkerId() {
+            return 1L;
+        }
+
+        @Override
+        public boolean isWorkerIdValid() {
+            return valid.get();
+        }
+
+        @Override
+        public Long getMaxBorrowSeconds() {
+            return 3L;
+        }
+    }
+}
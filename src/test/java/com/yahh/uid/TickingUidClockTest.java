@@ -0,0 +1,54 @@
+package com.yahh.uid;
+
+import com.yahh.uid.clock.TickingUidClock;
+import com.yahh.uid.impl.DefaultUidGenerator;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 测试共享时钟的引用计数，最后一个使用方释放后后台线程停止
+ */
+public class TickingUidClockTest {
+
+    @Test
+    public void testSharedClockStopsAfterLastRelease() throws Exception {
+        TickingUidClock shared = TickingUidClock.acquireShared();
+
+        DefaultUidGenerator uidGenerator = new DefaultUidGenerator();
+        uidGenerator.setWorkerIdAssigner(() -> 1L);
+        uidGenerator.afterPropertiesSet();
+        Assert.assertSame(shared, uidGenerator.getClock());
+
+        uidGenerator.destroy();
+        Assert.assertTrue(shared.isRunning());
+
+        TickingUidClock.releaseShared(shared);
+        Assert.assertFalse(shared.isRunning());
+
+        TickingUidClock next = TickingUidClock.acquireShared();
+        Assert.assertNotSame(shared, next);
+        Assert.assertTrue(next.isRunning());
+        TickingUidClock.releaseShared(next);
+        Assert.assertFalse(next.isRunning());
+    }
+
+    /**
+     * 初始化失败时生成器不会被destroy，共享时钟的引用在初始化中释放
+     */
+    @Test
+    public void testSharedClockReleasedWhenInitFails() {
+        DefaultUidGenerator uidGenerator = new DefaultUidGenerator();
+        uidGenerator.setWorkerIdAssigner(() -> {
+            throw new IllegalStateException("no worker id");
+        });
+        try {
+            uidGenerator.afterPropertiesSet();
+            Assert.fail("Init should fail");
+        } catch (Exception e) {
+            Assert.assertEquals("no worker id", e.getMessage());
+        }
+
+        TickingUidClock clock = (TickingUidClock) uidGenerator.getClock();
+        Assert.assertFalse(clock.isRunning());
+    }
+}
@@ -0,0 +1,128 @@
+package com.yahh.uid;
+
+import com.yahh.uid.autoconfigure.UidAutoConfiguration;
+import com.yahh.uid.impl.CachedUidGenerator;
+import com.yahh.uid.impl.DefaultUidGenerator;
+import com.yahh.uid.worker.FileLockWorkerIdAssigner;
+import com.yahh.uid.worker.LeasingWorkerIdAssigner;
+import com.yahh.uid.worker.WorkerIdAssigner;
+import com.yahh.uid.worker.dao.WorkerNodeDAO;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mybatis.spring.annotation.MapperScan;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.FilteredClassLoader;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.lang.reflect.Proxy;
+
+/**
+ * 测试classpath中没有MyBatis时自动配置仍然可用，FilteredClassLoader隐藏MyBatis的类
+ */
+public class UidAutoConfigurationTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(UidAutoConfiguration.class))
+            .withClassLoader(new FilteredClassLoader(MapperScan.class, SqlSessionFactory.class))
+            .withPropertyValues("uid.jmx.enabled=false");
+
+    /**
+     * file模式不需要mapper和DataSource
+     */
+    @Test
+    public void testFileAssignerWithoutMyBatis() {
+        contextRunner.withPropertyValues("uid.worker.assigner=file",
+                "uid.worker.directory=" + folder.getRoot().getAbsolutePath())
+                .run(context -> {
+                    Assert.assertNull(context.getStartupFailure());
+                    Assert.assertTrue(context.getBean(WorkerIdAssigner.class) instanceof FileLockWorkerIdAssigner);
+                    Assert.assertTrue(context.getBeansOfType(WorkerNodeDAO.class).isEmpty());
+                    Assert.assertTrue(context.getBean(UidGenerator.class).getUID() > 0);
+                });
+    }
+
+    /**
+     * file模式下借用上限不小于 crashWaitSeconds - 1 时启动失败，cached模式未配置时取 crashWaitSeconds - 2
+     */
+    @Test
+    public void testFileAssignerBorrowLimit() {
+        ApplicationContextRunner fileRunner = contextRunner.withPropertyValues("uid.type=cached",
+                "uid.worker.assigner=file", "uid.worker.directory=" + folder.getRoot().getAbsolutePath());
+        fileRunner.withPropertyValues("uid.cached.max-borrow-seconds=4")
+                .run(context -> {
+                    Assert.assertNotNull(context.getStartupFailure());
+                    Assert.assertTrue(context.getStartupFailure().getMessage().contains("uid.worker.crashWaitSeconds"));
+                });
+        fileRunner.run(context -> {
+            Assert.assertNull(context.getStartupFailure());
+            Assert.assertEquals(3L, context.getBean(CachedUidGenerator.class).getMaxPaddingBorrowSeconds().longValue());
+        });
+    }
+
+    /**
+     * 使用方提供的WorkerIdAssigner优先，不再注册基于WORKER_NODE表的assigner
+     */
+    @Test
+    public void testUserAssignerWithoutMyBatis() {
+        contextRunner.withUserConfiguration(AssignerConfiguration.class)
+                .run(context -> {
+                    Assert.assertNull(context.getStartupFailure());
+                    Assert.assertEquals(1, context.getBeansOfType(WorkerIdAssigner.class).size());
+                    DefaultUidGenerator uidGenerator = context.getBean(DefaultUidGenerator.class);
+                    uidGenerator.getUID();
+                    Assert.assertEquals(Long.valueOf(7L), uidGenerator.getWorkerId());
+                });
+    }
+
+    /**
+     * leasing模式下租约按cached模式的借用上限提前失效，上限达到 leaseSeconds - heartbeatSeconds - 2 时启动失败
+     */
+    @Test
+    public void testLeasingBorrowLimit() {
+        ApplicationContextRunner leasingRunner = contextRunner.withUserConfiguration(WorkerNodeDAOConfiguration.class)
+                .withPropertyValues("uid.type=cached", "uid.worker.assigner=leasing");
+        leasingRunner.withPropertyValues("uid.cached.max-borrow-seconds=30")
+                .run(context -> {
+                    Assert.assertNull(context.getStartupFailure());
+                    LeasingWorkerIdAssigner assigner = (LeasingWorkerIdAssigner) context.getBean(WorkerIdAssigner.class);
+                    Assert.assertEquals(30L, assigner.getMaxBorrowSeconds().longValue());
+                });
+        leasingRunner.withPropertyValues("uid.cached.max-borrow-seconds=38")
+                .run(context -> {
+                    Assert.assertNotNull(context.getStartupFailure());
+                    Assert.assertTrue(context.getStartupFailure().getMessage().contains("Max borrow seconds must be less than"));
+                });
+    }
+
+    @Configuration
+    static class WorkerNodeDAOConfiguration {
+
+        /**
+         * 借用上限在访问数据库之前校验，不需要真实的WORKER_NODE表
+         */
+        @Bean
+        WorkerNodeDAO workerNodeDAO() {
+            return (WorkerNodeDAO) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{WorkerNodeDAO.class},
+                    (proxy, method, args) -> {
+                        throw new UnsupportedOperationException(method.getName());
+                    });
+        }
+    }
+
+    @Configuration
+    static class AssignerConfiguration {
+
+        @Bean
+        WorkerIdAssigner workerIdAssigner() {
+            return () -> 7L;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.yahh.uid;
+
+import com.yahh.uid.impl.CachedUidGenerator;
+import com.yahh.uid.impl.DefaultUidGenerator;
+import com.yahh.uid.jmx.UidGeneratorMBeanRegistrar;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.context.support.GenericApplicationContext;
+
+import javax.management.Attribute;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+/**
+ * 在独立的MBeanServer中测试生成器MBean的注册、属性读写与注销，workerId固定为1
+ */
+public class UidGeneratorMBeanRegistrarTest {
+
+    /**
+     * 生成器初始化后注册，可以在运行时调整paddingFactor，destroy时注销
+     */
+    @Test
+    public void testCachedGeneratorMBean() throws Exception {
+        MBeanServer mBeanServer = MBeanServerFactory.newMBeanServer();
+        UidGeneratorMBeanRegistrar registrar = new UidGeneratorMBeanRegistrar(mBeanServer);
+        CachedUidGenerator uidGenerator = new CachedUidGenerator();
+        uidGenerator.setWorkerIdAssigner(() -> 1L);
+        uidGenerator.afterPropertiesSet();
+        try {
+            registrar.postProcessAfterInitialization(uidGenerator, "uidGenerator");
+            ObjectName objectName = new ObjectName("com.yahh.uid:type=UidGenerator,name=\"uidGenerator\"");
+            Assert.assertTrue(mBeanServer.isRegistered(objectName));
+            Assert.assertEquals(1L, mBeanServer.getAttribute(objectName, "WorkerId"));
+            Assert.assertEquals(uidGenerator.getBufferSize(), mBeanServer.getAttribute(objectName, "BufferSize"));
+
+            mBeanServer.setAttribute(objectName, new Attribute("PaddingFactor", 80));
+            Assert.assertEquals(80, uidGenerator.getPaddingFactor());
+            try {
+                mBeanServer.setAttribute(objectName, new Attribute("PaddingFactor", 100));
+                Assert.fail("Padding factor out of (0, 100) should be rejected");
+            } catch (Exception e) {
+                Assert.assertEquals(80, uidGenerator.getPaddingFactor());
+            }
+
+            registrar.destroy();
+            Assert.assertFalse(mBeanServer.isRegistered(objectName));
+        } finally {
+            uidGenerator.destroy();
+        }
+    }
+
+    /**
+     * 非生成器的bean不注册
+     */
+    @Test
+    public void testSkipOtherBeans() throws Exception {
+        MBeanServer mBeanServer = MBeanServerFactory.newMBeanServer();
+        UidGeneratorMBeanRegistrar registrar = new UidGeneratorMBeanRegistrar(mBeanServer);
+        int count = mBeanServer.getMBeanCount();
+
+        registrar.postProcessAfterInitialization(new Object(), "other");
+        Assert.assertEquals(count, mBeanServer.getMBeanCount().intValue());
+
+        DefaultUidGenerator uidGenerator = new DefaultUidGenerator();
+        uidGenerator.setWorkerIdAssigner(() -> 1L);
+        uidGenerator.afterPropertiesSet();
+        try {
+            registrar.postProcessAfterInitialization(uidGenerator, "defaultUidGenerator");
+            Assert.assertEquals(count + 1, mBeanServer.getMBeanCount().intValue());
+            registrar.destroy();
+        } finally {
+            uidGenerator.destroy();
+        }
+    }
+
+    /**
+     * 每个应用上下文以context区分各自的生成器，关闭一个上下文不影响另一个
+     */
+    @Test
+    public void testContextKeySeparatesContexts() throws Exception {
+        MBeanServer mBeanServer = MBeanServerFactory.newMBeanServer();
+        UidGeneratorMBeanRegistrar first = new UidGeneratorMBeanRegistrar(mBeanServer);
+        first.setApplicationContext(newContext("first"));
+        UidGeneratorMBeanRegistrar second = new UidGeneratorMBeanRegistrar(mBeanServer);
+        second.setApplicationContext(newContext("second"));
+        DefaultUidGenerator firstUidGenerator = new DefaultUidGenerator();
+        firstUidGenerator.setWorkerIdAssigner(() -> 1L);
+        firstUidGenerator.afterPropertiesSet();
+        DefaultUidGenerator secondUidGenerator = new DefaultUidGenerator();
+        secondUidGenerator.setWorkerIdAssigner(() -> 2L);
+        secondUidGenerator.afterPropertiesSet();
+        try {
+            first.postProcessAfterInitialization(firstUidGenerator, "uidGenerator");
+            second.postProcessAfterInitialization(secondUidGenerator, "uidGenerator");
+            ObjectName firstName = new ObjectName("com.yahh.uid:type=UidGenerator,context=\"first\",name=\"uidGenerator\"");
+            ObjectName secondName = new ObjectName("com.yahh.uid:type=UidGenerator,context=\"second\",name=\"uidGenerator\"");
+            Assert.assertEquals(1L, mBeanServer.getAttribute(firstName, "WorkerId"));
+            Assert.assertEquals(2L, mBeanServer.getAttribute(secondName, "WorkerId"));
+
+            second.destroy();
+            Assert.assertTrue(mBeanServer.isRegistered(firstName));
+            Assert.assertFalse(mBeanServer.isRegistered(secondName));
+            first.destroy();
+        } finally {
+            firstUidGenerator.destroy();
+            secondUidGenerator.destroy();
+        }
+    }
+
+    /**
+     * ObjectName已被其它上下文注册时跳过，不替换，销毁时也不注销其它上下文的MBean
+     */
+    @Test
+    public void testSkipWhenRegisteredByOthers() throws Exception {
+        MBeanServer mBeanServer = MBeanServerFactory.newMBeanServer();
+        UidGeneratorMBeanRegistrar first = new UidGeneratorMBeanRegistrar(mBeanServer);
+        UidGeneratorMBeanRegistrar second = new UidGeneratorMBeanRegistrar(mBeanServer);
+        DefaultUidGenerator firstUidGenerator = new DefaultUidGenerator();
+        firstUidGenerator.setWorkerIdAssigner(() -> 1L);
+        firstUidGenerator.afterPropertiesSet();
+        DefaultUidGenerator secondUidGenerator = new DefaultUidGenerator();
+        secondUidGenerator.setWorkerIdAssigner(() -> 2L);
+        secondUidGenerator.afterPropertiesSet();
+        try {
+            first.postProcessAfterInitialization(firstUidGenerator, "uidGenerator");
+            second.postProcessAfterInitialization(secondUidGenerator, "uidGenerator");
+            ObjectName objectName = new ObjectName("com.yahh.uid:type=UidGenerator,name=\"uidGenerator\"");
+            Assert.assertEquals(1L, mBeanServer.getAttribute(objectName, "WorkerId"));
+
+            second.destroy();
+            Assert.assertTrue(mBeanServer.isRegistered(objectName));
+            first.destroy();
+            Assert.assertFalse(mBeanServer.isRegistered(objectName));
+        } finally {
+            firstUidGenerator.destroy();
+            secondUidGenerator.destroy();
+        }
+    }
+
+    private static GenericApplicationContext newContext(String id) {
+        GenericApplicationContext applicationContext = new GenericApplicationContext();
+        applicationContext.setId(id);
+        return applicationContext;
+    }
+}
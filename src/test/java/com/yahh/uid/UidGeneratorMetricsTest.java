@@ -0,0 +1,151 @@
+package com.yahh.uid;
+
+import com.yahh.uid.autoconfigure.UidAutoConfiguration;
+import com.yahh.uid.impl.CachedUidGenerator;
+import com.yahh.uid.impl.DefaultUidGenerator;
+import com.yahh.uid.metrics.UidGeneratorMetrics;
+import com.yahh.uid.metrics.UidGeneratorMetricsRegistrar;
+import com.yahh.uid.worker.WorkerIdAssigner;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 测试生成器指标的注册与读数，使用固定或计数的WorkerIdAssigner代替数据库
+ */
+public class UidGeneratorMetricsTest {
+
+    private static final AtomicInteger ASSIGNED = new AtomicInteger();
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(UidAutoConfiguration.class))
+            .withUserConfiguration(MetricsConfiguration.class)
+            .withPropertyValues("uid.jmx.enabled=false");
+
+    /**
+     * 指标在采集时读取环的计数
+     */
+    @Test
+    public void testCachedGeneratorMeters() throws Exception {
+        CachedUidGenerator uidGenerator = new CachedUidGenerator();
+        uidGenerator.setWorkerIdAssigner(() -> 1L);
+        uidGenerator.afterPropertiesSet();
+        try {
+            MeterRegistry registry = new SimpleMeterRegistry();
+            new UidGeneratorMetrics(uidGenerator).bindTo(registry);
+
+            uidGenerator.getUIDs(100);
+            Assert.assertEquals(100.0, registry.get("uid.ring.takes").tag("type", "cached").functionCounter().count(), 0.0);
+            Assert.assertEquals(uidGenerator.getBufferSize(), registry.get("uid.ring.size").gauge().value(), 0.0);
+            Assert.assertEquals(0.0, registry.get("uid.ring.rejected.takes").functionCounter().count(), 0.0);
+            Assert.assertTrue(registry.get("uid.padding").functionTimer().count() >= 1);
+        } finally {
+            uidGenerator.destroy();
+        }
+    }
+
+    /**
+     * standard模式只有生成器本身的指标
+     */
+    @Test
+    public void testDefaultGeneratorMeters() throws Exception {
+        DefaultUidGenerator uidGenerator = new DefaultUidGenerator();
+        uidGenerator.setWorkerIdAssigner(() -> 1L);
+        uidGenerator.afterPropertiesSet();
+        try {
+            MeterRegistry registry = new SimpleMeterRegistry();
+            new UidGeneratorMetrics(uidGenerator).bindTo(registry);
+
+            uidGenerator.getUID();
+            Assert.assertEquals(0.0, registry.get("uid.sequence.exhausted.waits").tag("type", "standard").functionCounter().count(), 0.0);
+            Assert.assertNotNull(registry.find("uid.clock.backwards").meter());
+            Assert.assertNull(registry.find("uid.ring.size").meter());
+        } finally {
+            uidGenerator.destroy();
+        }
+    }
+
+    /**
+     * 存在MeterRegistry时生成器仍然是@Lazy的，第一次使用时才分配workerId并注册指标
+     */
+    @Test
+    public void testGeneratorStaysLazy() {
+        ASSIGNED.set(0);
+        contextRunner.run(context -> {
+            MeterRegistry registry = context.getBean(MeterRegistry.class);
+            Assert.assertEquals(0, ASSIGNED.get());
+            Assert.assertNull(registry.find("uid.sequence.exhausted.waits").meter());
+
+            context.getBean(UidGenerator.class).getUID();
+            Assert.assertEquals(1, ASSIGNED.get());
+            Assert.assertNotNull(registry.find("uid.sequence.exhausted.waits").meter());
+        });
+    }
+
+    /**
+     * 未开启预测填充时也注册获取速率、预计取空时间与预测填充次数，读数为0
+     */
+    @Test
+    public void testPredictionMetersRegisteredWhenDisabled() {
+        contextRunner.withPropertyValues("uid.type=cached").run(context -> {
+            MeterRegistry registry = context.getBean(MeterRegistry.class);
+            context.getBean(UidGenerator.class).getUID();
+
+            Assert.assertEquals(0.0, registry.get("uid.ring.take.rate").gauge().value(), 0.0);
+            Assert.assertEquals(0.0, registry.get("uid.ring.time.to.empty").timeGauge().value(TimeUnit.MILLISECONDS), 0.0);
+            Assert.assertEquals(0.0, registry.get("uid.padding.predictive").functionCounter().count(), 0.0);
+        });
+    }
+
+    /**
+     * 同一类型的多个生成器以beanName区分，各自注册一组指标
+     */
+    @Test
+    public void testGeneratorsOfSameTypeTaggedByName() throws Exception {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("meterRegistry", registry);
+        UidGeneratorMetricsRegistrar registrar = new UidGeneratorMetricsRegistrar(beanFactory.getBeanProvider(MeterRegistry.class));
+
+        DefaultUidGenerator orderUidGenerator = new DefaultUidGenerator();
+        orderUidGenerator.setWorkerIdAssigner(() -> 1L);
+        orderUidGenerator.afterPropertiesSet();
+        DefaultUidGenerator userUidGenerator = new DefaultUidGenerator();
+        userUidGenerator.setWorkerIdAssigner(() -> 2L);
+        userUidGenerator.afterPropertiesSet();
+        try {
+            registrar.postProcessAfterInitialization(orderUidGenerator, "orderUidGenerator");
+            registrar.postProcessAfterInitialization(userUidGenerator, "userUidGenerator");
+
+            Assert.assertEquals(2, registry.find("uid.sequence.exhausted.waits").tag("type", "standard").meters().size());
+            Assert.assertNotNull(registry.find("uid.sequence.exhausted.waits").tag("name", "orderUidGenerator").meter());
+            Assert.assertNotNull(registry.find("uid.sequence.exhausted.waits").tag("name", "userUidGenerator").meter());
+        } finally {
+            orderUidGenerator.destroy();
+            userUidGenerator.destroy();
+        }
+    }
+
+    @Configuration
+    static class MetricsConfiguration {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        WorkerIdAssigner workerIdAssigner() {
+            return () -> ASSIGNED.incrementAndGet();
+        }
+    }
+}